@@ -0,0 +1,83 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.Tag;
+import com.imagemanager.repository.ImageRepository;
+import com.imagemanager.repository.TagRepository;
+import com.imagemanager.service.ImageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting 100,000 new images, each with two tags, in one transaction. Scores are rows per
+ * second. {@code persistAll} is the bulk path of the upload and ingest code; {@code saveAll} is
+ * the repository method it replaced, which batches the same way but keeps every image in the
+ * persistence context until commit. The seeded database is H2, so MySQL's rewriting of batches
+ * into multi-row inserts is not part of the numbers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkInsertBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    @Param({"persistAll", "saveAll"})
+    public String path;
+
+    private SeededApplication app;
+    private ImageService imageService;
+    private ImageRepository imageRepository;
+    private TagRepository tagRepository;
+    private TransactionTemplate transactionTemplate;
+    private List<Long> tagIds;
+    private long batch;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication app) {
+        this.app = app;
+        imageService = app.context.getBean(ImageService.class);
+        imageRepository = app.context.getBean(ImageRepository.class);
+        tagRepository = app.context.getBean(TagRepository.class);
+        transactionTemplate = app.context.getBean(TransactionTemplate.class);
+        tagIds = List.of(tagRepository.findByName("sunset").orElseThrow().getId(),
+                tagRepository.findByName("beach").orElseThrow().getId());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Image> insert() {
+        long current = batch++;
+        // Tags loaded in the same transaction, as the bulk upload loads them in the request's
+        return transactionTemplate.execute(status -> {
+            List<Tag> tags = tagRepository.findAllById(tagIds);
+            List<Image> images = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                String name = "bulk-" + current + "-" + i;
+                Image image = new Image(name, name + ".jpg", name + ".jpg", app.user);
+                tags.forEach(image::addTag);
+                images.add(image);
+            }
+            return path.equals("persistAll") ? imageService.persistAll(images) : imageRepository.saveAll(images);
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.dto.BulkUploadResult;
+import com.imagemanager.service.BulkUploadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Files per second through {@link BulkUploadService}, the pipeline behind
+ * {@code POST /upload/bulk}, with {@code writers} threads on the ingest executor. Each call
+ * uploads {@value #BATCH} distinct 1024x768 JPEGs of about 110 KB: blob store write,
+ * derivatives, one tag lookup for the batch and the batched insert of the rows. Files are
+ * distinct so the content-addressed store never finds a duplicate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkUploadBenchmark {
+
+    private static final int BATCH = 32;
+
+    @State(Scope.Benchmark)
+    public static class Application extends SeededApplication {
+
+        @Param({"1", "4", "16"})
+        public int writers;
+
+        @Override
+        protected List<String> extraArguments() {
+            return List.of("--ingest.writer-threads=" + writers);
+        }
+    }
+
+    private BulkUploadService bulkUploadService;
+    private Application app;
+    private byte[] photo;
+    private long uploaded;
+
+    @Setup(Level.Trial)
+    public void setUp(Application app) throws IOException {
+        this.app = app;
+        bulkUploadService = app.context.getBean(BulkUploadService.class);
+
+        BufferedImage image = new BufferedImage(1024, 768, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(40, 90, 160), 1024, 768, new Color(220, 180, 90)));
+        graphics.fillRect(0, 0, 1024, 768);
+        graphics.dispose();
+        Random random = new Random(42);
+        for (int y = 0; y < 768; y++) {
+            for (int x = 0; x < 1024; x++) {
+                int noise = random.nextInt(25) - 12;
+                int rgb = image.getRGB(x, y);
+                int r = Math.min(255, Math.max(0, ((rgb >> 16) & 0xFF) + noise));
+                int g = Math.min(255, Math.max(0, ((rgb >> 8) & 0xFF) + noise));
+                int b = Math.min(255, Math.max(0, (rgb & 0xFF) + noise));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", bytes);
+        photo = bytes.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<BulkUploadResult> upload() {
+        List<MultipartFile> files = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            // Bytes after the JPEG end marker make every file distinct without changing the image
+            byte[] content = ByteBuffer.allocate(photo.length + Long.BYTES).put(photo).putLong(uploaded++).array();
+            files.add(new UploadedFile("bulk-" + uploaded + ".jpg", content));
+        }
+        List<BulkUploadResult> results = bulkUploadService.upload(files, null, "sunset, bulk", app.user);
+        if (!results.stream().allMatch(BulkUploadResult::isSuccess)) {
+            throw new IllegalStateException("Bulk upload failed: " + results.get(0).getMessage());
+        }
+        return results;
+    }
+
+    private record UploadedFile(String name, byte[] content) implements MultipartFile {
+
+        @Override
+        public String getName() {
+            return "files";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return name;
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/jpeg";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return content.length == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), content);
+        }
+
+        @Override
+        public void transferTo(Path dest) throws IOException {
+            Files.write(dest, content);
+        }
+    }
+}
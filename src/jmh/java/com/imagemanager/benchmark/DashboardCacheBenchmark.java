@@ -0,0 +1,95 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.dto.CursorPage;
+import com.imagemanager.dto.ImageCard;
+import com.imagemanager.service.ImageService;
+import com.imagemanager.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queries behind one dashboard page, the logged-in user and the first keyset page of cards
+ * with their tags, in one session as a request runs them. {@code coldPage} empties the
+ * second-level and query caches before every page. The statements each page sends are printed
+ * after every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DashboardCacheBenchmark {
+
+    private static final int PAGE_SIZE = 12;
+
+    private TransactionTemplate transactionTemplate;
+    private ImageService imageService;
+    private UserService userService;
+    private SessionFactory sessionFactory;
+    private Statistics statistics;
+    private Long userId;
+    private long pages;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication app) {
+        transactionTemplate = app.context.getBean(TransactionTemplate.class);
+        imageService = app.context.getBean(ImageService.class);
+        userService = app.context.getBean(UserService.class);
+        sessionFactory = app.context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class);
+        statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        userId = app.user.getId();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        pages = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportStatements() {
+        if (pages > 0) {
+            System.out.printf("%n%.1f statements per page, %d second-level hits, %d query cache hits%n",
+                    (double) statistics.getPrepareStatementCount() / pages,
+                    statistics.getSecondLevelCacheHitCount(), statistics.getQueryCacheHitCount());
+        }
+    }
+
+    @Benchmark
+    public CursorPage<ImageCard> coldPage() {
+        sessionFactory.getCache().evictAllRegions();
+        return page();
+    }
+
+    @Benchmark
+    public CursorPage<ImageCard> warmPage() {
+        return page();
+    }
+
+    private CursorPage<ImageCard> page() {
+        pages++;
+        return transactionTemplate.execute(status -> {
+            userService.getCachedUser(userId);
+            imageService.getApproximateImageCount();
+            return imageService.getImageCardsByCursor(null, PAGE_SIZE);
+        });
+    }
+}
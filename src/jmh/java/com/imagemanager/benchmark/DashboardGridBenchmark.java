@@ -0,0 +1,97 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.DashboardGridCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A logged-in GET of the first dashboard page over HTTP, with its grid served from
+ * {@link DashboardGridCache} and with the cache emptied first so the listing is loaded and
+ * the grid rendered again. Reported as time per page and pages per millisecond; the mean
+ * time of the grid renders in each iteration is printed after it.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DashboardGridBenchmark {
+
+    private HttpClient client;
+    private HttpRequest dashboard;
+    private DashboardGridCache gridCache;
+    private Timer renderTimer;
+    private long renders;
+    private double renderMillis;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededWebApplication app) throws IOException, InterruptedException {
+        gridCache = app.context.getBean(DashboardGridCache.class);
+        renderTimer = app.context.getBean(MeterRegistry.class).timer("imagemanager.dashboard.grid.render");
+        client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+        HttpRequest login = HttpRequest.newBuilder(URI.create(app.baseUrl() + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("username=admin&password=admin"))
+                .build();
+        client.send(login, HttpResponse.BodyHandlers.discarding());
+        dashboard = HttpRequest.newBuilder(URI.create(app.baseUrl() + "/dashboard")).build();
+        if (!get().contains("image-card")) {
+            throw new IllegalStateException("The dashboard did not render any images");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void markRenderTimer() {
+        renders = renderTimer.count();
+        renderMillis = renderTimer.totalTime(TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportRenderTime() {
+        long count = renderTimer.count() - renders;
+        if (count > 0) {
+            System.out.printf("%ngrid render %.2f ms on average over %d renders%n",
+                    (renderTimer.totalTime(TimeUnit.MILLISECONDS) - renderMillis) / count, count);
+        }
+    }
+
+    @Benchmark
+    public String cachedGrid() throws IOException, InterruptedException {
+        return get();
+    }
+
+    @Benchmark
+    public String fullRender() throws IOException, InterruptedException {
+        gridCache.invalidate();
+        return get();
+    }
+
+    private String get() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(dashboard, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET /dashboard returned " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,90 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.FlatStorageLayout;
+import com.imagemanager.service.ImageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ImageService} helpers that need no database: tag parsing, file type checks and
+ * reading a whole file into memory at several sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageFileBenchmark {
+
+    private static final String TAGS = "Sunset, beach ,  holiday,SUNSET, family, , travel-2024, Mountain";
+
+    private static final Path[] PATHS = {
+        Paths.get("3f2a9c.jpg"), Paths.get("clip.MP4"), Paths.get("notes.txt"),
+        Paths.get("3f2a9c.thumb-768.jpg"), Paths.get("scan.webp"), Paths.get("archive.zip")
+    };
+
+    @Param({"65536", "1048576", "16777216"})
+    public int fileSize;
+
+    private ImageService imageService;
+    private Path uploadDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        uploadDir = Files.createTempDirectory("image-manager-bench");
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        Files.write(uploadDir.resolve("original.jpg"), content);
+
+        imageService = new ImageService();
+        Field field = ReflectionUtils.findField(ImageService.class, "storageLayout");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, imageService, new FlatStorageLayout(uploadDir));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    public byte[] getImageData() throws IOException {
+        return imageService.getImageData("original.jpg");
+    }
+
+    @Benchmark
+    public Set<String> parseTagNames() {
+        return ImageService.parseTagNames(TAGS);
+    }
+
+    @Benchmark
+    public void isImageFile(Blackhole blackhole) {
+        for (Path path : PATHS) {
+            blackhole.consume(ImageService.isImageFile(path));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.dto.ImageCard;
+import com.imagemanager.entity.Image;
+import com.imagemanager.repository.ImageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ImageRepository} search and listing queries behind the dashboard and search pages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageRepositoryBenchmark {
+
+    private static final PageRequest FIRST_PAGE = PageRequest.of(0, 20);
+
+    @Benchmark
+    public Page<Image> searchByQuery(SeededApplication app) {
+        return repository(app).searchByQuery("sunset", FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Page<Image> searchByUserAndQuery(SeededApplication app) {
+        return repository(app).searchByUserAndQuery(app.user, "sunset", FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Page<Image> findByTagName(SeededApplication app) {
+        return repository(app).findByTagName("beach", FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Page<Image> findAllByUploadDate(SeededApplication app) {
+        return repository(app).findAllByOrderByUploadDateDesc(FIRST_PAGE);
+    }
+
+    @Benchmark
+    public List<ImageCard> findFirstKeysetPage(SeededApplication app) {
+        return repository(app).findFirstKeysetPage(FIRST_PAGE);
+    }
+
+    private ImageRepository repository(SeededApplication app) {
+        return app.context.getBean(ImageRepository.class);
+    }
+}
@@ -0,0 +1,81 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logged-in {@code GET /image/{id}} over HTTP, in requests per second. {@code cachedUser}
+ * resolves the current user from the principal's id through the users cache region;
+ * {@code userLookedUp} empties that region before each request, so the request pays the
+ * users query every request used to make.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageRequestBenchmark {
+
+    private HttpClient client;
+    private HttpRequest image;
+    private Cache secondLevelCache;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededWebApplication app) throws IOException, InterruptedException {
+        secondLevelCache = app.context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getCache();
+        client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+        HttpRequest login = HttpRequest.newBuilder(URI.create(app.baseUrl() + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("username=admin&password=admin"))
+                .build();
+        client.send(login, HttpResponse.BodyHandlers.discarding());
+
+        // The first seeded images have a file in the upload directory
+        Long id = app.context.getBean(JdbcTemplate.class)
+                .queryForObject("SELECT id FROM images WHERE file_name = 'image-0.jpg'", Long.class);
+        image = HttpRequest.newBuilder(URI.create(app.baseUrl() + "/image/" + id)).build();
+        get();
+    }
+
+    @Benchmark
+    public byte[] cachedUser() throws IOException, InterruptedException {
+        return get();
+    }
+
+    @Benchmark
+    public byte[] userLookedUp() throws IOException, InterruptedException {
+        secondLevelCache.evictEntityData(User.class);
+        return get();
+    }
+
+    private byte[] get() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(image, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + image.uri().getPath() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,46 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.service.ImageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The list-based {@link ImageService} paths against the seeded database. Each call runs in a
+ * read-only transaction, as it does inside a request with open-session-in-view.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageServiceBenchmark {
+
+    @Benchmark
+    public List<Image> getAllImages(SeededApplication app) {
+        return inTransaction(app, service -> service.getAllImages(app.user));
+    }
+
+    @Benchmark
+    public List<Image> searchImages(SeededApplication app) {
+        return inTransaction(app, service -> service.searchImages(app.user, "sunset"));
+    }
+
+    private List<Image> inTransaction(SeededApplication app, Function<ImageService, List<Image>> call) {
+        TransactionTemplate transaction = new TransactionTemplate(app.context.getBean(PlatformTransactionManager.class));
+        transaction.setReadOnly(true);
+        ImageService service = app.context.getBean(ImageService.class);
+        return transaction.execute(status -> call.apply(service));
+    }
+}
@@ -0,0 +1,90 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.MultiIndexHash;
+import com.imagemanager.service.PerceptualHashService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radius queries against a {@link MultiIndexHash} of {@code hashes} random hashes, where every
+ * tenth query is a copy of a stored hash with a few bits flipped, and the cost of hashing a
+ * thumbnail-sized image.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class NearDuplicateBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1000000"})
+    public int hashes;
+
+    @Param({"4", "6", "10"})
+    public int radius;
+
+    private MultiIndexHash index;
+    private long[] queries;
+    private int next;
+    private BufferedImage thumbnail;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long[] stored = new long[hashes];
+        index = new MultiIndexHash();
+        for (int i = 0; i < hashes; i++) {
+            stored[i] = random.nextLong();
+            index.add(stored[i], i);
+        }
+
+        queries = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            if (i % 10 == 0) {
+                long hash = stored[random.nextInt(hashes)];
+                for (int flip = random.nextInt(radius + 1); flip > 0; flip--) {
+                    hash ^= 1L << random.nextInt(64);
+                }
+                queries[i] = hash;
+            } else {
+                queries[i] = random.nextLong();
+            }
+        }
+
+        thumbnail = new BufferedImage(256, 192, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < thumbnail.getHeight(); y++) {
+            for (int x = 0; x < thumbnail.getWidth(); x++) {
+                thumbnail.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<MultiIndexHash.Match> search() {
+        next = (next + 1) % QUERIES;
+        return index.search(queries[next], radius);
+    }
+
+    @Benchmark
+    public long hashThumbnail() {
+        return PerceptualHashService.hash(thumbnail);
+    }
+}
@@ -0,0 +1,103 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.PackStore;
+import com.imagemanager.service.ShardedStorageLayout;
+import com.imagemanager.service.StorageLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a random small blob out of {@code blobs} stored either one file each in the sharded
+ * layout or in pack segments, copying it to the heap either way as {@code getImageData} does,
+ * and the cost of the index rebuild a restart pays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PackStoreBenchmark {
+
+    @Param({"20000"})
+    public int blobs;
+
+    @Param({"16384"})
+    public int blobSize;
+
+    private Path root;
+    private StorageLayout layout;
+    private PackStore packStore;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("image-manager-pack-bench");
+        layout = new ShardedStorageLayout(root, 1);
+        packStore = new PackStore(root.resolve(".packs"), 256L * 1024 * 1024);
+        packStore.open();
+
+        Random random = new Random(42);
+        byte[] hash = new byte[32];
+        byte[] content = new byte[blobSize];
+        names = new String[blobs];
+        for (int i = 0; i < blobs; i++) {
+            random.nextBytes(hash);
+            random.nextBytes(content);
+            names[i] = HexFormat.of().formatHex(hash) + ".jpg";
+            Files.write(layout.prepare(names[i]), content);
+            packStore.put(names[i], ByteBuffer.wrap(content));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        packStore.close();
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public byte[] readFile() throws IOException {
+        next = (next + 1) % blobs;
+        return Files.readAllBytes(layout.resolve(names[next]));
+    }
+
+    @Benchmark
+    public byte[] readPacked() throws IOException {
+        next = (next + 1) % blobs;
+        ByteBuffer packed = packStore.get(names[next]);
+        byte[] data = new byte[packed.remaining()];
+        packed.get(data);
+        return data;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PackStore.Stats rebuildIndex() throws IOException {
+        try (PackStore reopened = new PackStore(root.resolve(".packs"), 256L * 1024 * 1024)) {
+            reopened.open();
+            return reopened.stats();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.PlaceholderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest cost of a placeholder per image: building it from a preview already decoded for the
+ * perceptual hash, which is what the metadata pipeline pays, and decoding the smallest
+ * thumbnail first, which is what a placeholder on its own would cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlaceholderBenchmark {
+
+    private final PlaceholderService placeholderService = new PlaceholderService();
+
+    private BufferedImage preview;
+    private byte[] thumbnail;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        preview = new BufferedImage(256, 171, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = preview.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(40, 90, 160), 256, 171, new Color(220, 180, 90)));
+        graphics.fillRect(0, 0, 256, 171);
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(256), random.nextInt(171), 4 + random.nextInt(20), 4 + random.nextInt(20));
+        }
+        graphics.dispose();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(preview, "jpeg", bytes);
+        thumbnail = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public PlaceholderService.Placeholder fromPreview() throws IOException {
+        return placeholderService.create(preview);
+    }
+
+    @Benchmark
+    public PlaceholderService.Placeholder decodeAndCreate() throws IOException {
+        return placeholderService.create(ImageIO.read(new ByteArrayInputStream(thumbnail)));
+    }
+}
@@ -0,0 +1,101 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.repository.ImageRepository;
+import com.imagemanager.service.SearchIndexService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First page of a substring search over the seeded images, answered by
+ * {@link SearchIndexService} and by the JPQL {@code LIKE '%q%'} query it replaced, for a word
+ * in about a fifth of the titles and descriptions and for a fragment of a few hundred image
+ * numbers. The heap the index holds, the used heap after a full collection with and without
+ * it, is printed once it is built. Run at scale with {@code -p images=1000000}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+
+    private static final PageRequest FIRST_PAGE = PageRequest.of(0, 12);
+    private static final String COMMON_WORD = "sunset";
+    private static final String RARE_FRAGMENT = "4242";
+
+    private SearchIndexService searchIndex;
+    private ImageRepository imageRepository;
+    private TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication app) {
+        searchIndex = app.context.getBean(SearchIndexService.class);
+        imageRepository = app.context.getBean(ImageRepository.class);
+        readOnly = new TransactionTemplate(app.context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        // The seeded application starts with the index off so other benchmarks skip the rebuild
+        Field enabled = ReflectionUtils.findField(SearchIndexService.class, "enabled");
+        ReflectionUtils.makeAccessible(enabled);
+        ReflectionUtils.setField(enabled, searchIndex, true);
+
+        long before = usedHeap();
+        long start = System.currentTimeMillis();
+        searchIndex.rebuild();
+        long built = System.currentTimeMillis() - start;
+        long footprint = usedHeap() - before;
+        System.out.printf("%nSearch index of %d images: %.0f MB, %d bytes per image, built in %d ms%n",
+                searchIndex.size(), footprint / 1048576.0, footprint / Math.max(1, searchIndex.size()), built);
+    }
+
+    @Benchmark
+    public Page<Long> indexCommonWord() {
+        return searchIndex.search(COMMON_WORD, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Page<Long> indexRareFragment() {
+        return searchIndex.search(RARE_FRAGMENT, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Page<Long> jpqlCommonWord() {
+        return jpql(COMMON_WORD);
+    }
+
+    @Benchmark
+    public Page<Long> jpqlRareFragment() {
+        return jpql(RARE_FRAGMENT);
+    }
+
+    private Page<Long> jpql(String query) {
+        return readOnly.execute(status -> imageRepository.searchByQuery(query, FIRST_PAGE).map(Image::getId));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,173 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.ImageManagerApplication;
+import com.imagemanager.entity.User;
+import com.imagemanager.repository.UserRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The application context running against an in-memory H2 database seeded with a generated
+ * dataset. The size is controlled with JMH parameters, e.g. {@code -p images=1000000}.
+ * Images are spread evenly over {@code users} uploaders and carry up to four of {@code tags}
+ * tags; the first {@code files} images also exist in the upload directory, next to as many
+ * files that have no row.
+ */
+@State(Scope.Benchmark)
+public class SeededApplication {
+
+    static final String[] WORDS = {
+        "sunset", "beach", "holiday", "family", "mountain", "city", "night", "portrait",
+        "forest", "river", "snow", "birthday", "concert", "garden", "street", "harbour"
+    };
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    @Param({"10000"})
+    public int images;
+
+    @Param({"50000"})
+    public int tags;
+
+    @Param({"10"})
+    public int users;
+
+    @Param({"1000"})
+    public int files;
+
+    public ConfigurableApplicationContext context;
+    public User user;
+    private Path uploadDir;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        uploadDir = Files.createTempDirectory("image-manager-bench");
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID()
+                        + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--spring.devtools.restart.enabled=false",
+                "--file.upload-dir=" + uploadDir,
+                "--search.index.enabled=false",
+                "--ingest.watch.enabled=false",
+                "--metadata.backfill.on-startup=false"));
+        args.addAll(extraArguments());
+        context = new SpringApplicationBuilder(ImageManagerApplication.class)
+                .web(webApplicationType())
+                .logStartupInfo(false)
+                .run(args.toArray(String[]::new));
+
+        seed(context.getBean(JdbcTemplate.class));
+        user = context.getBean(UserRepository.class).findByUsername("user0").orElseThrow();
+    }
+
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.NONE;
+    }
+
+    protected List<String> extraArguments() {
+        return List.of();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(uploadDir);
+    }
+
+    private void seed(JdbcTemplate jdbc) throws IOException {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Object[]> rows = new ArrayList<>();
+        long firstUserId = reserveIds(jdbc, "users", users);
+        List<Long> userIds = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            userIds.add(firstUserId + u);
+            rows.add(new Object[] { firstUserId + u, "user" + u, "{noop}secret", "user" + u + "@example.com",
+                    "UPLOADER", Timestamp.valueOf(now) });
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, username, password, email, role, enabled, created_date) "
+                + "VALUES (?, ?, ?, ?, ?, TRUE, ?)", rows);
+
+        rows.clear();
+        for (int t = 0; t < tags; t++) {
+            rows.add(new Object[] { t < WORDS.length ? WORDS[t] : "tag-" + t });
+        }
+        batchInsert(jdbc, "INSERT INTO tags (name) VALUES (?)", rows);
+        long firstTagId = jdbc.queryForObject("SELECT MIN(id) FROM tags", Long.class);
+
+        rows.clear();
+        long firstImageId = reserveIds(jdbc, "images", images);
+        for (int i = 0; i < images; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String description = "A " + WORDS[random.nextInt(WORDS.length)] + " photo taken near the "
+                    + WORDS[random.nextInt(WORDS.length)];
+            rows.add(new Object[] { firstImageId + i, title, "image-" + i + ".jpg", title + ".jpg", description,
+                    Timestamp.valueOf(now.minusMinutes(i)), userIds.get(i % userIds.size()) });
+        }
+        batchInsert(jdbc, "INSERT INTO images (id, title, file_name, original_file_name, description, upload_date, "
+                + "user_id) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+
+        rows.clear();
+        for (int i = 0; i < images; i++) {
+            int count = random.nextInt(5);
+            long previous = -1;
+            for (int k = 0; k < count; k++) {
+                long tagId = firstTagId + random.nextInt(tags);
+                if (tagId != previous) {
+                    rows.add(new Object[] { firstImageId + i, tagId });
+                    previous = tagId;
+                }
+            }
+        }
+        batchInsert(jdbc, "INSERT IGNORE INTO image_tags (image_id, tag_id) VALUES (?, ?)", rows);
+
+        for (int f = 0; f < files; f++) {
+            Files.write(uploadDir.resolve("image-" + f + ".jpg"), new byte[] { 1 });
+            Files.write(uploadDir.resolve("loose-" + f + ".png"), new byte[] { 1 });
+        }
+    }
+
+    /**
+     * Takes {@code count} ids from the generator row, the same way a block is allocated to
+     * Hibernate, so seeded rows never collide with ids the application hands out. Returns the
+     * first of them.
+     */
+    private long reserveIds(JdbcTemplate jdbc, String name, int count) {
+        long last = jdbc.queryForObject("SELECT next_val FROM id_generators WHERE name = ?", Long.class, name);
+        jdbc.update("UPDATE id_generators SET next_val = ? WHERE name = ?", last + count, name);
+        return last + 1;
+    }
+
+    private void batchInsert(JdbcTemplate jdbc, String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += INSERT_BATCH_SIZE) {
+            jdbc.batchUpdate(sql, rows.subList(from, Math.min(from + INSERT_BATCH_SIZE, rows.size())));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.imagemanager.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.util.List;
+
+/**
+ * {@link SeededApplication} served over HTTP on a random port, for benchmarks of whole requests.
+ * The default admin account, admin/admin, can log in.
+ */
+@State(Scope.Benchmark)
+public class SeededWebApplication extends SeededApplication {
+
+    public String baseUrl() {
+        return "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    @Override
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.SERVLET;
+    }
+
+    @Override
+    protected List<String> extraArguments() {
+        return List.of("--server.port=0", "--management.server.port=0",
+                "--logging.level.org.springframework.web=WARN", "--logging.level.org.springframework.security=WARN");
+    }
+}
@@ -0,0 +1,90 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.FlatStorageLayout;
+import com.imagemanager.service.ShardedStorageLayout;
+import com.imagemanager.service.StorageLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing the whole store and looking up single files with {@code files} empty files named
+ * like content hashes, flat and sharded. The default keeps setup to a few seconds; the
+ * directory sizes that matter in production need {@code -p files=5000000} and a file system
+ * with inodes to spare.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageLayoutBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"200000"})
+    public int files;
+
+    @Param({"flat", "sharded"})
+    public String layout;
+
+    private Path root;
+    private StorageLayout storageLayout;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("image-manager-layout-bench");
+        storageLayout = layout.equals("sharded") ? new ShardedStorageLayout(root, 8) : new FlatStorageLayout(root);
+
+        Random random = new Random(42);
+        byte[] hash = new byte[32];
+        names = new String[LOOKUPS];
+        for (int i = 0; i < files; i++) {
+            random.nextBytes(hash);
+            String name = HexFormat.of().formatHex(hash) + ".jpg";
+            Files.createFile(storageLayout.prepare(name));
+            if (i < LOOKUPS) {
+                names[i] = name;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Path> listFiles() throws IOException {
+        return storageLayout.listFiles();
+    }
+
+    @Benchmark
+    public boolean lookup() {
+        next = (next + 1) % LOOKUPS;
+        return Files.exists(storageLayout.resolve(names[next]));
+    }
+}
@@ -0,0 +1,118 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.TagIndex;
+import com.imagemanager.service.TagQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Three-tag queries against a {@link TagIndex} of {@code images} images carrying
+ * {@code tagsPerImage} of {@code tags} tags each, picked with a Zipf-like skew so low-numbered
+ * tags are common (t0 is on about a third of the images) and high-numbered ones rare. Each
+ * query operation parses, evaluates and takes the first page of 20 ids, which is everything the
+ * search page needs before loading the rows. {@code loadSnapshot} is the restart path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TagIndexBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Index {
+
+        @Param({"1000000"})
+        public int images;
+
+        @Param({"1000"})
+        public int tags;
+
+        @Param({"5"})
+        public int tagsPerImage;
+
+        TagIndex index;
+
+        @Setup(Level.Trial)
+        public void build() {
+            double[] cumulative = new double[tags];
+            double total = 0;
+            for (int t = 0; t < tags; t++) {
+                total += 1.0 / (t + 1);
+                cumulative[t] = total;
+            }
+
+            Random random = new Random(42);
+            index = new TagIndex();
+            for (int id = 1; id <= images; id++) {
+                Set<String> names = new LinkedHashSet<>();
+                while (names.size() < tagsPerImage) {
+                    int at = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                    names.add("t" + (at >= 0 ? at : -at - 1));
+                }
+                index.addImage(id, names);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Query {
+
+        @Param({
+            "tag:t0 AND tag:t1 AND tag:t2",
+            "tag:t0 AND tag:t3 AND NOT tag:t1",
+            "tag:t10 OR tag:t20 OR tag:t30",
+            "tag:t1 AND tag:t40 AND tag:t400"
+        })
+        public String query;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Snapshot {
+
+        Path file;
+
+        @Setup(Level.Trial)
+        public void write(Index index) throws IOException {
+            file = Files.createTempFile("image-manager-tag-index", ".snapshot");
+            index.index.write(file);
+            System.out.printf("%nSnapshot of %d images: %d KB%n", index.index.imageCount(), Files.size(file) / 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public TagIndex.Result firstPage(Index index, Query query) {
+        return index.index.query(TagQuery.parse(query.query), 0, 20);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TagIndex loadSnapshot(Snapshot snapshot) throws IOException {
+        return TagIndex.read(snapshot.file);
+    }
+}
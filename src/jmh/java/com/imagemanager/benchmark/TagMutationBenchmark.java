@@ -0,0 +1,99 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.Tag;
+import com.imagemanager.repository.ImageRepository;
+import com.imagemanager.repository.TagRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding and then removing one tag on an image that already carries {@code imageTags} tags,
+ * each step in its own transaction as the tag endpoints run. The statements each toggle sends
+ * are printed after every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TagMutationBenchmark {
+
+    @Param({"500"})
+    public int imageTags;
+
+    private TransactionTemplate transactionTemplate;
+    private ImageRepository imageRepository;
+    private TagRepository tagRepository;
+    private Statistics statistics;
+    private Long imageId;
+    private Long tagId;
+    private long toggles;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication app) {
+        transactionTemplate = app.context.getBean(TransactionTemplate.class);
+        imageRepository = app.context.getBean(ImageRepository.class);
+        tagRepository = app.context.getBean(TagRepository.class);
+        statistics = app.context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        JdbcTemplate jdbc = app.context.getBean(JdbcTemplate.class);
+        imageId = jdbc.queryForObject("SELECT MIN(id) FROM images", Long.class);
+        List<Long> tagIds = jdbc.queryForList("SELECT id FROM tags ORDER BY id LIMIT " + (imageTags + 1), Long.class);
+        jdbc.update("DELETE FROM image_tags WHERE image_id = ?", imageId);
+        List<Object[]> rows = new ArrayList<>();
+        for (Long id : tagIds.subList(0, imageTags)) {
+            rows.add(new Object[] { imageId, id });
+        }
+        jdbc.batchUpdate("INSERT INTO image_tags (image_id, tag_id) VALUES (?, ?)", rows);
+        tagId = tagIds.get(imageTags);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        toggles = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportStatements() {
+        if (toggles > 0) {
+            System.out.printf("%n%.1f statements per toggle%n", (double) statistics.getPrepareStatementCount() / toggles);
+        }
+    }
+
+    @Benchmark
+    public void toggleTag() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Image image = imageRepository.findById(imageId).orElseThrow();
+            image.addTag(tagRepository.findById(tagId).orElseThrow());
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            Image image = imageRepository.findById(imageId).orElseThrow();
+            image.removeTag(tagRepository.findById(tagId).orElseThrow());
+        });
+        toggles++;
+    }
+}
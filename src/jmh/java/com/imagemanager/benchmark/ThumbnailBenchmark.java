@@ -0,0 +1,156 @@
+package com.imagemanager.benchmark;
+
+import com.imagemanager.service.FlatStorageLayout;
+import com.imagemanager.service.PackStoreService;
+import com.imagemanager.service.ThumbnailService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of showing an upload in the gallery before and after derivatives. {@code decodeOriginal}
+ * is a full decode of the original, what every card cost when the grid linked the originals;
+ * {@code decodeCardDerivative} is the 768px derivative a card now loads. {@code decodePreview}
+ * is the subsampled decode used when no derivative exists yet, and {@code generateThumbnails}
+ * the work added to an upload. The page weight of a 12-card page, originals against the
+ * derivatives the cards pick, is printed once per trial. Originals are generated noisy photos
+ * of {@code megapixels} at JPEG quality 0.92.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThumbnailBenchmark {
+
+    private static final String ORIGINAL = "original.jpg";
+    private static final String UNPROCESSED = "unprocessed.jpg";
+    private static final int CARDS_PER_PAGE = 12;
+    private static final int CARD_SIZE = 768;
+
+    @Param({"12", "24"})
+    public int megapixels;
+
+    private ThumbnailService thumbnailService;
+    private Path uploadDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        uploadDir = Files.createTempDirectory("image-manager-bench");
+        writePhoto(uploadDir.resolve(ORIGINAL));
+        Files.copy(uploadDir.resolve(ORIGINAL), uploadDir.resolve(UNPROCESSED));
+
+        thumbnailService = new ThumbnailService();
+        set("storageLayout", new FlatStorageLayout(uploadDir));
+        set("packStoreService", new PackStoreService());
+        set("sizes", new int[] { 256, 768, 1600 });
+        thumbnailService.generateThumbnails(ORIGINAL);
+
+        long original = Files.size(uploadDir.resolve(ORIGINAL));
+        long derivative = Files.size(uploadDir.resolve(ThumbnailService.thumbnailFileName(ORIGINAL, CARD_SIZE)));
+        System.out.printf("%n%d-card page: originals %.1f MB, %dpx derivatives %.0f KB%n", CARDS_PER_PAGE,
+                CARDS_PER_PAGE * original / 1048576.0, CARD_SIZE, CARDS_PER_PAGE * derivative / 1024.0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    public BufferedImage decodeOriginal() throws IOException {
+        return ImageIO.read(uploadDir.resolve(ORIGINAL).toFile());
+    }
+
+    @Benchmark
+    public BufferedImage decodeCardDerivative() throws IOException {
+        return ImageIO.read(uploadDir.resolve(ThumbnailService.thumbnailFileName(ORIGINAL, CARD_SIZE)).toFile());
+    }
+
+    @Benchmark
+    public BufferedImage decodePreview() throws IOException {
+        return thumbnailService.decodePreview(UNPROCESSED);
+    }
+
+    @Benchmark
+    public List<Path> generateThumbnails() throws IOException {
+        return thumbnailService.generateThumbnails(ORIGINAL);
+    }
+
+    private void set(String name, Object value) {
+        Field field = ReflectionUtils.findField(ThumbnailService.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, thumbnailService, value);
+    }
+
+    /**
+     * A 4:3 gradient with shapes and per-pixel sensor-like noise, which keeps the JPEG about
+     * as large as a camera's.
+     */
+    private void writePhoto(Path target) throws IOException {
+        int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000 * 4 / 3.0));
+        int height = width * 3 / 4;
+        BufferedImage photo = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = photo.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(40, 90, 160), width, height, new Color(220, 180, 90)));
+        graphics.fillRect(0, 0, width, height);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(300),
+                    20 + random.nextInt(300));
+        }
+        graphics.dispose();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = photo.getRGB(x, y);
+                int noise = random.nextInt(25) - 12;
+                int r = Math.min(255, Math.max(0, ((rgb >> 16) & 0xFF) + noise));
+                int g = Math.min(255, Math.max(0, ((rgb >> 8) & 0xFF) + noise));
+                int b = Math.min(255, Math.max(0, (rgb & 0xFF) + noise));
+                photo.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.92f);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(photo, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
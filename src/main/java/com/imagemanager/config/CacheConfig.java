@@ -0,0 +1,69 @@
+package com.imagemanager.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Caffeine caches behind the Hibernate second-level and query caches, one per region, sized and
+ * expired from {@code cache.regions.<region>.max-size} and {@code .ttl}. Hibernate is set to
+ * fail on a region that is not configured here, so none is created unbounded by accident.
+ */
+@Configuration
+public class CacheConfig {
+
+    // When each table was last written; queries cached before then are stale. Evicting an entry
+    // early would let a stale result through, so this region is never bounded or expired.
+    private static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    public record RegionSettings(Long maxSize, Duration ttl) {
+    }
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(Environment environment) {
+        Map<String, RegionSettings> regions = Binder.get(environment)
+            .bind("cache.regions", Bindable.mapOf(String.class, RegionSettings.class))
+            .orElse(Map.of());
+        if (regions.containsKey(TIMESTAMPS_REGION)) {
+            throw new IllegalArgumentException("cache.regions." + TIMESTAMPS_REGION + " cannot be bounded");
+        }
+
+        // A manager of its own, so several contexts in one JVM do not share regions
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+            URI.create("image-manager-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        cacheManager.createCache(TIMESTAMPS_REGION, new CaffeineConfiguration<>());
+        regions.forEach((name, settings) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            if (settings.maxSize() != null) {
+                configuration.setMaximumSize(OptionalLong.of(settings.maxSize()));
+            }
+            if (settings.ttl() != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(settings.ttl().toNanos()));
+            }
+            cacheManager.createCache(name, configuration);
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
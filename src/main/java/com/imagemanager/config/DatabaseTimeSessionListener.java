@@ -0,0 +1,54 @@
+package com.imagemanager.config;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.SessionEventListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds up the JDBC time spent by one Hibernate session and records it when the session ends.
+ * With open-session-in-view a session spans a web request, so this is the database time per
+ * request. Hibernate instantiates the listener itself, hence the global registry, which Spring
+ * Boot binds to the application's registry.
+ */
+public class DatabaseTimeSessionListener implements SessionEventListener {
+    
+    private long startedAt;
+    private long jdbcNanos;
+    private int statements;
+    
+    @Override
+    public void jdbcExecuteStatementStart() {
+        startedAt = System.nanoTime();
+    }
+    
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        jdbcNanos += System.nanoTime() - startedAt;
+        statements++;
+    }
+    
+    @Override
+    public void jdbcExecuteBatchStart() {
+        startedAt = System.nanoTime();
+    }
+    
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        jdbcNanos += System.nanoTime() - startedAt;
+        statements++;
+    }
+    
+    @Override
+    public void end() {
+        if (statements == 0) {
+            return;
+        }
+        Timer.builder("imagemanager.db.session")
+                .description("JDBC time spent by one Hibernate session")
+                .register(Metrics.globalRegistry)
+                .record(jdbcNanos, TimeUnit.NANOSECONDS);
+        Metrics.summary("imagemanager.db.session.statements").record(statements);
+    }
+}
@@ -0,0 +1,43 @@
+package com.imagemanager.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Raises each id_generators row to the highest id already in its table before anything is
+ * inserted. The row holds the last id handed out, so rows written before the switch from
+ * IDENTITY, or by hand, would otherwise collide with the next block. Runs after the schema
+ * update, which creates the table.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdGeneratorInitializer {
+
+    // Generator row and the table it hands out ids for
+    private static final Map<String, String> TABLES = Map.of(
+        "images", "images",
+        "users", "users");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        TABLES.forEach((name, table) -> {
+            long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            int updated = jdbcTemplate.update(
+                "UPDATE id_generators SET next_val = ? WHERE name = ? AND next_val < ?", maxId, name, maxId);
+            if (updated > 0) {
+                System.out.println("Id generator " + name + " moved to " + maxId);
+            } else if (jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM id_generators WHERE name = ?", Long.class, name) == 0) {
+                jdbcTemplate.update("INSERT INTO id_generators (name, next_val) VALUES (?, ?)", name, maxId);
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.imagemanager.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class IngestConfig {
+    
+    @Value("${ingest.writer-threads:4}")
+    private int writerThreads;
+    
+    @Value("${ingest.queue-capacity:64}")
+    private int queueCapacity;
+    
+    @Value("${metadata.worker-threads:2}")
+    private int metadataThreads;
+    
+    @Value("${metadata.queue-capacity:1000}")
+    private int metadataQueueCapacity;
+    
+    /**
+     * Bounded pool for upload file writes. When the queue is full the submitting request
+     * thread writes the file itself, which throttles clients instead of buffering without limit.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor ingestExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(writerThreads);
+        executor.setMaxPoolSize(writerThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ingest-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Pool for reading metadata after upload. It rejects work when the queue is full rather than
+     * slowing uploads down; rejected images keep no status and are picked up by the backfill.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor metadataExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(metadataThreads);
+        executor.setMaxPoolSize(metadataThreads);
+        executor.setQueueCapacity(metadataQueueCapacity);
+        executor.setThreadNamePrefix("metadata-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
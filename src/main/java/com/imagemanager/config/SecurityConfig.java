@@ -46,8 +46,11 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/", "/login", "/css/**", "/js/**", "/images/**", "/uploads/**").permitAll()
-                .requestMatchers("/upload").hasAnyRole("UPLOADER", "MODERATOR", "ADMIN")
-                .requestMatchers("/create-user", "/sync-files").hasRole("ADMIN")
+                // Actuator is only served on the management port bound to localhost
+                .requestMatchers("/actuator/**").permitAll()
+                .requestMatchers("/upload", "/upload/bulk", "/upload/sessions/**").hasAnyRole("UPLOADER", "MODERATOR", "ADMIN")
+                .requestMatchers("/create-user", "/sync-files", "/thumbnails/backfill", "/metadata/backfill",
+                        "/storage/deduplicate", "/storage/migrate").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
@@ -0,0 +1,39 @@
+package com.imagemanager.config;
+
+import com.imagemanager.service.FlatStorageLayout;
+import com.imagemanager.service.ShardedStorageLayout;
+import com.imagemanager.service.StorageLayout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class StorageConfig {
+    
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+    
+    @Value("${storage.layout:flat}")
+    private String layout;
+    
+    @Value("${storage.listing-threads:8}")
+    private int listingThreads;
+    
+    /**
+     * {@code flat} keeps every file in the upload directory; {@code sharded} spreads them over
+     * hash-prefix subdirectories and still finds files left in the root until they are migrated.
+     */
+    @Bean
+    public StorageLayout storageLayout() {
+        switch (layout) {
+            case "flat":
+                return new FlatStorageLayout(Paths.get(uploadDir));
+            case "sharded":
+                return new ShardedStorageLayout(Paths.get(uploadDir), listingThreads);
+            default:
+                throw new IllegalArgumentException("Unknown storage.layout: " + layout);
+        }
+    }
+}
@@ -1,29 +1,50 @@
 package com.imagemanager.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.imagemanager.service.BlobStoreService;
+import com.imagemanager.service.PackStoreService;
+import com.imagemanager.service.StorageLayout;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.PathResourceResolver;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     
-    @Value("${file.upload-dir:./uploads}")
-    private String uploadDir;
+    @Autowired
+    private StorageLayout storageLayout;
+    
+    @Autowired
+    private PackStoreService packStoreService;
     
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         try {
-            Files.createDirectories(Paths.get(uploadDir));
+            Files.createDirectories(storageLayout.root());
             
-            String absolutePath = Paths.get(uploadDir).toAbsolutePath().toString();
+            String absolutePath = storageLayout.root().toAbsolutePath().toString();
             
+            // Cache-Control is set per file name by UploadCacheInterceptor
             registry.addResourceHandler("/uploads/**")
-            .addResourceLocations("file:D:/uploads/")
-                    .setCachePeriod(3600); 
+            .addResourceLocations("file:" + absolutePath + "/")
+                    .resourceChain(false)
+                    .addResolver(new LayoutResourceResolver());
             
             System.out.println("📁 Serving static resources from: " + absolutePath);
             System.out.println("📁 Upload directory configured for: /uploads/** -> " + absolutePath);
@@ -32,4 +53,76 @@ public class WebConfig implements WebMvcConfigurer {
             System.err.println("❌ Failed to configure upload directory: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new UploadCacheInterceptor()).addPathPatterns("/uploads/**");
+    }
+    
+    /**
+     * Content-addressed files are cached for a year without revalidation. Any other file can be
+     * overwritten under the same name, so caches must check its Last-Modified first.
+     */
+    private static class UploadCacheInterceptor implements HandlerInterceptor {
+        
+        private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+        
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            String uri = request.getRequestURI();
+            String fileName = uri.substring(uri.lastIndexOf('/') + 1);
+            CacheControl cacheControl = BlobStoreService.isContentAddressed(fileName) ? IMMUTABLE : REVALIDATE;
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            return true;
+        }
+    }
+    
+    /**
+     * URLs stay {@code /uploads/<name>} whatever the layout; the layout decides which
+     * subdirectory the name is read from. Packed blobs are served from their pack segment.
+     */
+    private class LayoutResourceResolver extends PathResourceResolver {
+        
+        @Override
+        protected Resource getResource(String resourcePath, Resource location) {
+            if (resourcePath.isEmpty() || resourcePath.contains("/") || resourcePath.contains("\\")
+                    || resourcePath.startsWith(".")) {
+                return null;
+            }
+            try {
+                ByteBuffer packed = packStoreService.read(resourcePath);
+                if (packed != null) {
+                    byte[] content = new byte[packed.remaining()];
+                    packed.get(content);
+                    return new PackedResource(resourcePath, content);
+                }
+            } catch (IOException e) {
+                return null;
+            }
+            Path file = storageLayout.resolve(resourcePath);
+            return Files.isRegularFile(file) ? new FileSystemResource(file) : null;
+        }
+    }
+    
+    private static class PackedResource extends ByteArrayResource {
+        
+        private final String fileName;
+        
+        PackedResource(String fileName, byte[] content) {
+            super(content);
+            this.fileName = fileName;
+        }
+        
+        @Override
+        public String getFilename() {
+            return fileName;
+        }
+        
+        // Not a file, so there is no modification time; the name is the content hash
+        @Override
+        public long lastModified() {
+            return -1;
+        }
+    }
+}
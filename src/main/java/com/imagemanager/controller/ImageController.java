@@ -1,20 +1,38 @@
 package com.imagemanager.controller;
 
+import com.imagemanager.dto.BulkUploadResult;
+import com.imagemanager.dto.CursorPage;
+import com.imagemanager.dto.DeduplicationReport;
+import com.imagemanager.dto.ImageCard;
+import com.imagemanager.dto.NearDuplicate;
+import com.imagemanager.dto.SavedImage;
+import com.imagemanager.dto.UserPrincipal;
 import com.imagemanager.entity.Image;
 import com.imagemanager.entity.Tag;
 import com.imagemanager.entity.User;
 import com.imagemanager.repository.ImageRepository;
-import com.imagemanager.repository.TagRepository;
+import com.imagemanager.service.BlobStoreService;
+import com.imagemanager.service.BulkUploadService;
+import com.imagemanager.service.DashboardGridCache;
 import com.imagemanager.service.ImageService;
+import com.imagemanager.service.MediaStreamingService;
+import com.imagemanager.service.MetadataService;
+import com.imagemanager.service.PackStoreService;
+import com.imagemanager.service.SearchIndexService;
+import com.imagemanager.service.SearchResultCache;
+import com.imagemanager.service.TagIndexService;
+import com.imagemanager.service.StorageMigrationService;
+import com.imagemanager.service.ThumbnailService;
+import com.imagemanager.service.UploadWatcherService;
 import com.imagemanager.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,13 +42,19 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Controller
 public class ImageController {
     
+    // Content-addressed files never change; others may be overwritten in place, so they revalidate
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+    
     @Autowired
     private ImageService imageService;
     
@@ -41,7 +65,40 @@ public class ImageController {
     private ImageRepository imageRepository;
     
     @Autowired
-    private TagRepository tagRepository;
+    private ThumbnailService thumbnailService;
+    
+    @Autowired
+    private MediaStreamingService mediaStreamingService;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private SearchIndexService searchIndexService;
+    
+    @Autowired
+    private TagIndexService tagIndexService;
+    
+    @Autowired
+    private SearchResultCache searchResultCache;
+    
+    @Autowired
+    private DashboardGridCache dashboardGridCache;
+    
+    @Autowired
+    private BulkUploadService bulkUploadService;
+    
+    @Autowired
+    private UploadWatcherService uploadWatcherService;
+    
+    @Autowired
+    private MetadataService metadataService;
+    
+    @Autowired
+    private StorageMigrationService storageMigrationService;
+    
+    @Autowired
+    private PackStoreService packStoreService;
     
     @GetMapping("/")
     public String home() {
@@ -59,27 +116,25 @@ public class ImageController {
     public String dashboard(@AuthenticationPrincipal UserDetails userDetails, 
                           @RequestParam(defaultValue = "0") int page,
                           @RequestParam(defaultValue = "12") int size,
+                          @RequestParam(required = false) String cursor,
+                          HttpServletRequest request,
+                          HttpServletResponse response,
                           Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             model.addAttribute("userRole", userRole);
             
-            Pageable pageable = PageRequest.of(page, size, Sort.by("uploadDate").descending());
-            Page<Image> imagePage;
-            
-            if (userRole.equals("ADMIN") || userRole.equals("MODERATOR")) {
-                imagePage = imageRepository.findAll(pageable);
+            // The first pages are the same for everyone with this role, so their grid is rendered once
+            if (dashboardGridCache.isCacheable(page, cursor)) {
+                DashboardGridCache.Grid grid = dashboardGridCache.get(userRole, page, size,
+                    listing -> addDashboardPage(listing, page, size, cursor), request, response);
+                model.addAllAttributes(grid.attributes());
+                model.addAttribute("gridHtml", grid.html());
             } else {
-                imagePage = imageRepository.findAll(pageable);
+                addDashboardPage(model, page, size, cursor);
             }
-            
-            model.addAttribute("images", imagePage.getContent());
-            model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", imagePage.getTotalPages());
-            model.addAttribute("totalItems", imagePage.getTotalElements());
             model.addAttribute("pageSize", size);
             
             if (!model.containsAttribute("pageSize")) {
@@ -107,8 +162,7 @@ public class ImageController {
                             @RequestParam(required = false) String tags,
                             Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             
             String userRole = getUserRole(userDetails);
@@ -124,8 +178,14 @@ public class ImageController {
                 return "upload";
             }
             
-            imageService.saveImage(file, title, description, tags, user);
-            model.addAttribute("success", "Image uploaded successfully!");
+            SavedImage saved = imageService.saveImage(file, title, description, tags, user);
+            if (saved.nearDuplicateIds().isEmpty()) {
+                model.addAttribute("success", "Image uploaded successfully!");
+            } else {
+                model.addAttribute("success", "Image uploaded successfully! It looks like "
+                        + saved.nearDuplicateIds().size() + " image(s) already in the library: "
+                        + saved.nearDuplicateIds());
+            }
             
         } catch (IOException e) {
             model.addAttribute("error", "Failed to upload image: " + e.getMessage());
@@ -138,33 +198,47 @@ public class ImageController {
         return "upload";
     }
     
+    @PostMapping("/upload/bulk")
+    @ResponseBody
+    public ResponseEntity<List<BulkUploadResult>> bulkUpload(@AuthenticationPrincipal UserDetails userDetails,
+                                                             @RequestParam("files") List<MultipartFile> files,
+                                                             @RequestParam(required = false) String description,
+                                                             @RequestParam(required = false) String tags) {
+        User user = userService.getCurrentUser(userDetails);
+        
+        String userRole = getUserRole(userDetails);
+        if (!userRole.equals("UPLOADER") && !userRole.equals("MODERATOR") && !userRole.equals("ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        return ResponseEntity.ok(bulkUploadService.upload(files, description, tags, user));
+    }
+    
     @GetMapping("/search")
     public String searchImages(@AuthenticationPrincipal UserDetails userDetails,
                              @RequestParam(required = false) String query,
                              @RequestParam(defaultValue = "0") int page,
                              @RequestParam(defaultValue = "12") int size,
+                             @RequestParam(required = false) String cursor,
                              Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             model.addAttribute("userRole", userRole);
             
-            Pageable pageable = PageRequest.of(page, size, Sort.by("uploadDate").descending());
-            Page<Image> imagePage;
-            
-            if (query == null || query.trim().isEmpty()) {
-                imagePage = imageRepository.findAll(pageable);
+            boolean emptyQuery = query == null || query.trim().isEmpty();
+            if (emptyQuery && (page == 0 || cursor != null)) {
+                addCursorPage(model, cursor, size);
             } else {
-                imagePage = imageRepository.findByTitleContainingIgnoreCaseOrDescriptionContainingIgnoreCaseOrTagsNameContainingIgnoreCase(
-                    query, query, query, pageable);
+                Pageable pageable = PageRequest.of(page, size);
+                Page<ImageCard> imagePage = imageService.searchImageCards(query, pageable);
+                
+                model.addAttribute("images", imagePage.getContent());
+                model.addAttribute("currentPage", page);
+                model.addAttribute("totalPages", imagePage.getTotalPages());
+                model.addAttribute("totalItems", imagePage.getTotalElements());
             }
-            
-            model.addAttribute("images", imagePage.getContent());
-            model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", imagePage.getTotalPages());
-            model.addAttribute("totalItems", imagePage.getTotalElements());
             model.addAttribute("pageSize", size);
             model.addAttribute("query", query);
             
@@ -186,8 +260,7 @@ public class ImageController {
                             @AuthenticationPrincipal UserDetails userDetails,
                             Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             if (!userRole.equals("MODERATOR") && !userRole.equals("ADMIN")) {
@@ -211,8 +284,7 @@ public class ImageController {
                         @AuthenticationPrincipal UserDetails userDetails,
                         Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             if (!userRole.equals("TAGGER") && !userRole.equals("UPLOADER") && 
@@ -221,16 +293,8 @@ public class ImageController {
                 return "redirect:/dashboard";
             }
             
-            Image image = imageRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Image not found"));
-            
             if (tagName != null && !tagName.trim().isEmpty()) {
-                String cleanedTag = tagName.trim().toLowerCase();
-                Tag tag = tagRepository.findByName(cleanedTag)
-                    .orElseGet(() -> tagRepository.save(new Tag(cleanedTag)));
-                
-                image.addTag(tag);
-                imageRepository.save(image);
+                imageService.addTag(id, tagName.trim().toLowerCase());
                 
                 model.addAttribute("success", "Tag '" + tagName + "' added successfully!");
             }
@@ -248,8 +312,7 @@ public class ImageController {
                            @AuthenticationPrincipal UserDetails userDetails,
                            Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             if (!userRole.equals("TAGGER") && !userRole.equals("UPLOADER") && 
@@ -258,18 +321,7 @@ public class ImageController {
                 return "redirect:/dashboard";
             }
             
-            Image image = imageRepository.findById(imageId)
-                .orElseThrow(() -> new RuntimeException("Image not found"));
-            
-            Tag tag = tagRepository.findById(tagId)
-                .orElseThrow(() -> new RuntimeException("Tag not found"));
-            
-            image.removeTag(tag);
-            imageRepository.save(image);
-            
-            if (tag.getImages().isEmpty()) {
-                tagRepository.delete(tag);
-            }
+            Tag tag = imageService.removeTag(imageId, tagId);
             
             model.addAttribute("success", "Tag '" + tag.getName() + "' removed successfully!");
             
@@ -287,8 +339,7 @@ public class ImageController {
                                   @AuthenticationPrincipal UserDetails userDetails,
                                   Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             if (!userRole.equals("ADMIN")) {
@@ -296,11 +347,7 @@ public class ImageController {
                 return "redirect:/dashboard";
             }
             
-            Image image = imageRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Image not found"));
-            
-            image.setDescription(description);
-            imageRepository.save(image);
+            imageService.updateDescription(id, description);
             
             model.addAttribute("success", "Description updated successfully!");
             
@@ -358,8 +405,7 @@ public class ImageController {
                               @AuthenticationPrincipal UserDetails userDetails,
                               Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             if (!userRole.equals("MODERATOR") && !userRole.equals("ADMIN")) {
@@ -367,8 +413,7 @@ public class ImageController {
                 return "redirect:/dashboard";
             }
             
-            Optional<Image> existingImage = imageRepository.findByFileName(fileName);
-            if (existingImage.isPresent()) {
+            if (imageRepository.existsByFileName(fileName)) {
                 model.addAttribute("error", "Image already exists in database!");
                 return "redirect:/dashboard";
             }
@@ -381,7 +426,13 @@ public class ImageController {
             image.setDescription("Added from file system");
             image.setUploadDate(LocalDateTime.now());
             
-            imageRepository.save(image);
+            Image saved = imageRepository.save(image);
+            searchIndexService.index(saved);
+            tagIndexService.index(saved);
+            searchResultCache.invalidate();
+            dashboardGridCache.invalidate();
+            metadataService.enqueue(saved);
+            blobStoreService.retain(fileName);
             model.addAttribute("success", "Image added to database successfully!");
             
         } catch (Exception e) {
@@ -394,8 +445,7 @@ public class ImageController {
     @PostMapping("/sync-files")
     public String syncFiles(@AuthenticationPrincipal UserDetails userDetails, Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getCurrentUser(userDetails);
             
             String userRole = getUserRole(userDetails);
             if (!userRole.equals("ADMIN")) {
@@ -403,8 +453,8 @@ public class ImageController {
                 return "redirect:/dashboard";
             }
             
-            imageService.syncFileSystemImages(user);
-            model.addAttribute("success", "File system images synced to database!");
+            int created = uploadWatcherService.fullSync(user);
+            model.addAttribute("success", created + " file system images synced to database!");
             
         } catch (Exception e) {
             model.addAttribute("error", "Error syncing files: " + e.getMessage());
@@ -413,41 +463,192 @@ public class ImageController {
         return "redirect:/dashboard";
     }
     
-    @GetMapping("/image/{id}")
-    public ResponseEntity<byte[]> getImage(@PathVariable Long id, 
-                                         @AuthenticationPrincipal UserDetails userDetails) {
+    @PostMapping("/thumbnails/backfill")
+    public String backfillThumbnails(@AuthenticationPrincipal UserDetails userDetails, Model model) {
+        try {
+            String userRole = getUserRole(userDetails);
+            if (!userRole.equals("ADMIN")) {
+                model.addAttribute("error", "Only administrators can generate thumbnails");
+                return "redirect:/dashboard";
+            }
+            
+            int generated = thumbnailService.backfillThumbnails();
+            model.addAttribute("success", "Generated thumbnails for " + generated + " images!");
+            
+        } catch (Exception e) {
+            model.addAttribute("error", "Error generating thumbnails: " + e.getMessage());
+        }
+        
+        return "redirect:/dashboard";
+    }
+    
+    @PostMapping("/metadata/backfill")
+    public String backfillMetadata(@AuthenticationPrincipal UserDetails userDetails, Model model) {
         try {
-            User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            String userRole = getUserRole(userDetails);
+            if (!userRole.equals("ADMIN")) {
+                model.addAttribute("error", "Only administrators can read image metadata");
+                return "redirect:/dashboard";
+            }
+            
+            if (metadataService.startBackfill()) {
+                model.addAttribute("success", "Metadata backfill started!");
+            } else {
+                model.addAttribute("error", "Metadata backfill is already running");
+            }
+            
+        } catch (Exception e) {
+            model.addAttribute("error", "Error starting metadata backfill: " + e.getMessage());
+        }
+        
+        return "redirect:/dashboard";
+    }
+    
+    @PostMapping("/storage/deduplicate")
+    public String deduplicateStorage(@AuthenticationPrincipal UserDetails userDetails, Model model) {
+        try {
+            String userRole = getUserRole(userDetails);
+            if (!userRole.equals("ADMIN")) {
+                model.addAttribute("error", "Only administrators can deduplicate storage");
+                return "redirect:/dashboard";
+            }
+            
+            DeduplicationReport report = blobStoreService.deduplicateUploadDirectory();
+            System.out.println("Storage deduplication: " + report);
+            model.addAttribute("success", report.toString());
+            
+        } catch (Exception e) {
+            model.addAttribute("error", "Error deduplicating storage: " + e.getMessage());
+        }
+        
+        return "redirect:/dashboard";
+    }
+    
+    @PostMapping("/storage/migrate")
+    public String migrateStorage(@AuthenticationPrincipal UserDetails userDetails, Model model) {
+        try {
+            String userRole = getUserRole(userDetails);
+            if (!userRole.equals("ADMIN")) {
+                model.addAttribute("error", "Only administrators can migrate storage");
+                return "redirect:/dashboard";
+            }
             
+            if (storageMigrationService.start()) {
+                model.addAttribute("success", "Storage migration started!");
+            } else {
+                model.addAttribute("error", "Storage migration is already running");
+            }
+            
+        } catch (Exception e) {
+            model.addAttribute("error", "Error starting storage migration: " + e.getMessage());
+        }
+        
+        return "redirect:/dashboard";
+    }
+    
+    @GetMapping("/image/{id}/thumb/{size}")
+    public void getThumbnail(@PathVariable Long id,
+                             @PathVariable int size,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        try {
             Image image = imageRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Image not found"));
             
-            byte[] imageData = imageService.getImageData(image.getFileName());
+            // Until a derivative exists the original is served, so only derivatives are immutable
+            Path thumbnail = thumbnailService.resolveThumbnail(image.getFileName(), size);
+            boolean derivative = ThumbnailService.isThumbnail(thumbnail.getFileName().toString());
+            ByteBuffer packed = derivative ? null : packStoreService.read(image.getFileName());
+            if (packed != null) {
+                mediaStreamingService.stream(image.getFileName(), packed, REVALIDATE, request, response);
+            } else {
+                boolean immutable = derivative && BlobStoreService.isContentAddressed(image.getFileName());
+                mediaStreamingService.stream(thumbnail, immutable ? IMMUTABLE : REVALIDATE, request, response);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        }
+    }
+    
+    @GetMapping("/image/{id}/similar")
+    public ResponseEntity<List<NearDuplicate>> getSimilarImages(@PathVariable Long id,
+                                                                @RequestParam(defaultValue = "6") int radius) {
+        return imageRepository.findById(id)
+            .map(image -> ResponseEntity.ok(imageService.findNearDuplicates(image, radius)))
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/image/{id}")
+    public void getImage(@PathVariable Long id, 
+                         @AuthenticationPrincipal UserDetails userDetails,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        try {
+            User user = userService.getCurrentUser(userDetails);
             
-            HttpHeaders headers = new HttpHeaders();
+            Image image = imageRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Image not found"));
             
-            String fileName = image.getFileName().toLowerCase();
-            if (fileName.endsWith(".png")) {
-                headers.setContentType(MediaType.IMAGE_PNG);
-            } else if (fileName.endsWith(".gif")) {
-                headers.setContentType(MediaType.IMAGE_GIF);
+            CacheControl cacheControl = BlobStoreService.isContentAddressed(image.getFileName()) ? IMMUTABLE : REVALIDATE;
+            ByteBuffer packed = packStoreService.read(image.getFileName());
+            if (packed != null) {
+                mediaStreamingService.stream(image.getFileName(), packed, cacheControl, request, response);
             } else {
-                headers.setContentType(MediaType.IMAGE_JPEG);
+                Path imagePath = imageService.getImagePath(image.getFileName());
+                mediaStreamingService.stream(imagePath, cacheControl, request, response);
             }
-            
-            return new ResponseEntity<>(imageData, headers, HttpStatus.OK);
         } catch (IOException e) {
-            return ResponseEntity.notFound().build();
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
         } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            }
         }
     }
     
+    private void addDashboardPage(Model model, int page, int size, String cursor) {
+        if (page > 0 && cursor == null) {
+            Pageable pageable = PageRequest.of(page, size);
+            Page<ImageCard> imagePage = imageService.getImageCardPage(pageable);
+            
+            model.addAttribute("images", imagePage.getContent());
+            model.addAttribute("currentPage", page);
+            model.addAttribute("totalPages", imagePage.getTotalPages());
+            model.addAttribute("totalItems", imagePage.getTotalElements());
+        } else {
+            addCursorPage(model, cursor, size);
+        }
+    }
+    
+    private void addCursorPage(Model model, String cursor, int size) {
+        CursorPage<ImageCard> imagePage = imageService.getImageCardsByCursor(cursor, size);
+        long approximateTotal = imageService.getApproximateImageCount();
+        
+        model.addAttribute("keysetMode", true);
+        model.addAttribute("images", imagePage.getContent());
+        model.addAttribute("nextCursor", imagePage.getNextCursor());
+        model.addAttribute("previousCursor", imagePage.getPreviousCursor());
+        model.addAttribute("currentPage", 0);
+        model.addAttribute("totalPages", (int) Math.ceil((double) approximateTotal / size));
+        model.addAttribute("totalItems", approximateTotal);
+    }
+    
     private String getUserRole(UserDetails userDetails) {
         if (userDetails == null) {
             return "VIEWER";
         }
+        if (userDetails instanceof UserPrincipal) {
+            // The cached user reflects role changes made since login
+            try {
+                return userService.getCurrentUser(userDetails).getRole();
+            } catch (RuntimeException e) {
+                return "VIEWER";
+            }
+        }
         
         return userDetails.getAuthorities().stream()
                 .map(authority -> authority.getAuthority())
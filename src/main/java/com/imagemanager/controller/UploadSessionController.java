@@ -0,0 +1,102 @@
+package com.imagemanager.controller;
+
+import com.imagemanager.dto.UploadSessionStatus;
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.User;
+import com.imagemanager.service.UploadSessionService;
+import com.imagemanager.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Resumable upload protocol for large files:
+ * <ol>
+ *   <li>{@code POST /upload/sessions} with the file name and size opens a session;</li>
+ *   <li>{@code PUT /upload/sessions/{id}/chunks/{index}} sends one chunk as an
+ *       {@code application/octet-stream} body, with its SHA-256 in the {@code X-Chunk-Checksum}
+ *       header, in any order and any number of times;</li>
+ *   <li>{@code GET /upload/sessions/{id}} reports the offset and the chunks still missing;</li>
+ *   <li>{@code POST /upload/sessions/{id}/complete} saves the image.</li>
+ * </ol>
+ * {@code DELETE /upload/sessions/{id}} abandons the upload.
+ */
+@RestController
+@RequestMapping("/upload/sessions")
+public class UploadSessionController {
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private UserService userService;
+
+    @PostMapping
+    public ResponseEntity<UploadSessionStatus> create(@AuthenticationPrincipal UserDetails userDetails,
+                                                      @RequestParam String fileName,
+                                                      @RequestParam long size,
+                                                      @RequestParam(required = false) Integer chunkSize,
+                                                      @RequestParam(required = false) String title,
+                                                      @RequestParam(required = false) String description,
+                                                      @RequestParam(required = false) String tags) throws IOException {
+        User user = userService.getCurrentUser(userDetails);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(uploadSessionService.create(user, fileName, size, chunkSize, title, description, tags));
+    }
+
+    @GetMapping("/{id}")
+    public UploadSessionStatus status(@AuthenticationPrincipal UserDetails userDetails, @PathVariable String id) {
+        return uploadSessionService.status(id, userService.getCurrentUser(userDetails));
+    }
+
+    @PutMapping(value = "/{id}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public UploadSessionStatus writeChunk(@AuthenticationPrincipal UserDetails userDetails,
+                                          @PathVariable String id,
+                                          @PathVariable int index,
+                                          @RequestHeader(value = "X-Chunk-Checksum", required = false) String checksum,
+                                          HttpServletRequest request) throws IOException {
+        User user = userService.getCurrentUser(userDetails);
+        return uploadSessionService.writeChunk(id, user, index, request.getInputStream(), checksum);
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<UploadSessionStatus> complete(@AuthenticationPrincipal UserDetails userDetails,
+                                                        @PathVariable String id) throws IOException {
+        User user = userService.getCurrentUser(userDetails);
+        UploadSessionStatus status = uploadSessionService.status(id, user);
+        Image image = uploadSessionService.complete(id, user);
+        status.setImageId(image.getId());
+        return ResponseEntity.status(HttpStatus.CREATED).body(status);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abort(@AuthenticationPrincipal UserDetails userDetails,
+                                      @PathVariable String id) throws IOException {
+        uploadSessionService.abort(id, userService.getCurrentUser(userDetails));
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, String>> notFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, String>> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+}
@@ -0,0 +1,30 @@
+package com.imagemanager.dto;
+
+public class BulkUploadResult {
+    private String originalFileName;
+    private boolean success;
+    private Long imageId;
+    private String fileName;
+    private String message;
+    
+    public BulkUploadResult() {}
+    
+    public BulkUploadResult(String originalFileName) {
+        this.originalFileName = originalFileName;
+    }
+    
+    public String getOriginalFileName() { return originalFileName; }
+    public void setOriginalFileName(String originalFileName) { this.originalFileName = originalFileName; }
+    
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+    
+    public Long getImageId() { return imageId; }
+    public void setImageId(Long imageId) { this.imageId = imageId; }
+    
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,21 @@
+package com.imagemanager.dto;
+
+import java.util.List;
+
+public class CursorPage<T> {
+    private final List<T> content;
+    private final String nextCursor;
+    private final String previousCursor;
+    
+    public CursorPage(List<T> content, String nextCursor, String previousCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+    
+    public List<T> getContent() { return content; }
+    public String getNextCursor() { return nextCursor; }
+    public String getPreviousCursor() { return previousCursor; }
+    public boolean hasNext() { return nextCursor != null; }
+    public boolean hasPrevious() { return previousCursor != null; }
+}
@@ -0,0 +1,22 @@
+package com.imagemanager.dto;
+
+public class DeduplicationReport {
+    private int filesScanned;
+    private int duplicatesRemoved;
+    private long bytesReclaimed;
+    
+    public int getFilesScanned() { return filesScanned; }
+    public void setFilesScanned(int filesScanned) { this.filesScanned = filesScanned; }
+    
+    public int getDuplicatesRemoved() { return duplicatesRemoved; }
+    public void setDuplicatesRemoved(int duplicatesRemoved) { this.duplicatesRemoved = duplicatesRemoved; }
+    
+    public long getBytesReclaimed() { return bytesReclaimed; }
+    public void setBytesReclaimed(long bytesReclaimed) { this.bytesReclaimed = bytesReclaimed; }
+    
+    @Override
+    public String toString() {
+        return "Scanned " + filesScanned + " files, removed " + duplicatesRemoved
+                + " duplicates, reclaimed " + bytesReclaimed + " bytes";
+    }
+}
@@ -0,0 +1,75 @@
+package com.imagemanager.dto;
+
+import com.imagemanager.entity.Image;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only view of an image with just the fields a gallery card renders. The description is
+ * cut to {@link #DESCRIPTION_PREVIEW_LENGTH}, the same limit the card's edit form enforces.
+ */
+public class ImageCard {
+    public static final int DESCRIPTION_PREVIEW_LENGTH = 500;
+    
+    private final Long id;
+    private final String title;
+    private final String fileName;
+    private final String originalFileName;
+    private final String description;
+    private final LocalDateTime uploadDate;
+    private final String username;
+    private final Integer width;
+    private final Integer height;
+    private final String placeholder;
+    private final String dominantColor;
+    private List<TagSummary> tags = new ArrayList<>();
+    
+    public ImageCard(Long id, String title, String fileName, String originalFileName,
+                     String description, LocalDateTime uploadDate, String username,
+                     Integer width, Integer height, String placeholder, String dominantColor) {
+        this.id = id;
+        this.title = title;
+        this.fileName = fileName;
+        this.originalFileName = originalFileName;
+        this.description = description;
+        this.uploadDate = uploadDate;
+        this.username = username;
+        this.width = width;
+        this.height = height;
+        this.placeholder = placeholder;
+        this.dominantColor = dominantColor;
+    }
+    
+    public static ImageCard from(Image image) {
+        String description = image.getDescription();
+        if (description != null && description.length() > DESCRIPTION_PREVIEW_LENGTH) {
+            description = description.substring(0, DESCRIPTION_PREVIEW_LENGTH);
+        }
+        ImageCard card = new ImageCard(image.getId(), image.getTitle(), image.getFileName(),
+                image.getOriginalFileName(), description, image.getUploadDate(),
+                image.getUser() != null ? image.getUser().getUsername() : null,
+                image.getWidth(), image.getHeight(), image.getPlaceholder(), image.getDominantColor());
+        card.setTags(image.getTags().stream()
+                .map(tag -> new TagSummary(image.getId(), tag.getId(), tag.getName()))
+                .collect(Collectors.toList()));
+        return card;
+    }
+    
+    public Long getId() { return id; }
+    public String getTitle() { return title; }
+    public String getFileName() { return fileName; }
+    public String getOriginalFileName() { return originalFileName; }
+    public String getDescription() { return description; }
+    public LocalDateTime getUploadDate() { return uploadDate; }
+    public String getUsername() { return username; }
+    public Integer getWidth() { return width; }
+    public Integer getHeight() { return height; }
+    public String getPlaceholder() { return placeholder; }
+    public String getDominantColor() { return dominantColor; }
+    
+    public List<TagSummary> getTags() { return tags; }
+    public void setTags(List<TagSummary> tags) { this.tags = tags; }
+}
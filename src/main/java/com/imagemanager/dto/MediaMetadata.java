@@ -0,0 +1,38 @@
+package com.imagemanager.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * What could be read from a media file's headers. Any field may be null when the format does
+ * not carry it or the header could not be parsed.
+ */
+public class MediaMetadata {
+    private Integer width;
+    private Integer height;
+    private String format;
+    private LocalDateTime takenAt;
+    private Integer orientation;
+    private String camera;
+    private Long durationMillis;
+    
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+    
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+    
+    public String getFormat() { return format; }
+    public void setFormat(String format) { this.format = format; }
+    
+    public LocalDateTime getTakenAt() { return takenAt; }
+    public void setTakenAt(LocalDateTime takenAt) { this.takenAt = takenAt; }
+    
+    public Integer getOrientation() { return orientation; }
+    public void setOrientation(Integer orientation) { this.orientation = orientation; }
+    
+    public String getCamera() { return camera; }
+    public void setCamera(String camera) { this.camera = camera; }
+    
+    public Long getDurationMillis() { return durationMillis; }
+    public void setDurationMillis(Long durationMillis) { this.durationMillis = durationMillis; }
+}
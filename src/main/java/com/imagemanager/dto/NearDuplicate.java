@@ -0,0 +1,24 @@
+package com.imagemanager.dto;
+
+/**
+ * An image that looks like another one, with the Hamming distance between their perceptual
+ * hashes. Zero means the hashes are identical.
+ */
+public class NearDuplicate {
+    private final Long imageId;
+    private final String title;
+    private final String fileName;
+    private final int distance;
+    
+    public NearDuplicate(Long imageId, String title, String fileName, int distance) {
+        this.imageId = imageId;
+        this.title = title;
+        this.fileName = fileName;
+        this.distance = distance;
+    }
+    
+    public Long getImageId() { return imageId; }
+    public String getTitle() { return title; }
+    public String getFileName() { return fileName; }
+    public int getDistance() { return distance; }
+}
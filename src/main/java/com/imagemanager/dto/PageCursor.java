@@ -0,0 +1,57 @@
+package com.imagemanager.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the (uploadDate, id) ordering of images, carried in URLs as an opaque token.
+ * A cursor either points after a row (next page) or before it (previous page).
+ */
+public class PageCursor {
+    private final boolean after;
+    private final LocalDateTime uploadDate;
+    private final Long id;
+    
+    public PageCursor(boolean after, LocalDateTime uploadDate, Long id) {
+        this.after = after;
+        this.uploadDate = uploadDate;
+        this.id = id;
+    }
+    
+    public static PageCursor after(LocalDateTime uploadDate, Long id) {
+        return new PageCursor(true, uploadDate, id);
+    }
+    
+    public static PageCursor before(LocalDateTime uploadDate, Long id) {
+        return new PageCursor(false, uploadDate, id);
+    }
+    
+    /**
+     * Returns null for a missing or malformed token, which callers treat as the first page.
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3 || !(parts[0].equals("a") || parts[0].equals("b"))) {
+                return null;
+            }
+            return new PageCursor(parts[0].equals("a"), LocalDateTime.parse(parts[1]), Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+    
+    public String encode() {
+        String raw = (after ? "a" : "b") + "|" + uploadDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public boolean isAfter() { return after; }
+    public LocalDateTime getUploadDate() { return uploadDate; }
+    public Long getId() { return id; }
+}
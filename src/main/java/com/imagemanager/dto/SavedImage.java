@@ -0,0 +1,12 @@
+package com.imagemanager.dto;
+
+import com.imagemanager.entity.Image;
+
+import java.util.List;
+
+/**
+ * A newly saved image and the ids of the images already stored that look like it, which the
+ * upload reports back to the uploader.
+ */
+public record SavedImage(Image image, List<Long> nearDuplicateIds) {
+}
@@ -0,0 +1,17 @@
+package com.imagemanager.dto;
+
+public class TagSummary {
+    private final Long imageId;
+    private final Long id;
+    private final String name;
+    
+    public TagSummary(Long imageId, Long id, String name) {
+        this.imageId = imageId;
+        this.id = id;
+        this.name = name;
+    }
+    
+    public Long getImageId() { return imageId; }
+    public Long getId() { return id; }
+    public String getName() { return name; }
+}
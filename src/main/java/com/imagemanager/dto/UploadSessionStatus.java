@@ -0,0 +1,53 @@
+package com.imagemanager.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * State of a resumable upload as reported to the client. {@code offset} is the number of bytes
+ * received without a gap from the start of the file, so a sequential client resumes there;
+ * {@code missingChunks} lists the first chunks still to be sent for clients that upload in
+ * parallel.
+ */
+public class UploadSessionStatus {
+    private String sessionId;
+    private String fileName;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    private int receivedChunks;
+    private long offset;
+    private List<Integer> missingChunks;
+    private LocalDateTime expiresAt;
+    private Long imageId;
+    
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+    
+    public int getChunkCount() { return chunkCount; }
+    public void setChunkCount(int chunkCount) { this.chunkCount = chunkCount; }
+    
+    public int getReceivedChunks() { return receivedChunks; }
+    public void setReceivedChunks(int receivedChunks) { this.receivedChunks = receivedChunks; }
+    
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+    
+    public List<Integer> getMissingChunks() { return missingChunks; }
+    public void setMissingChunks(List<Integer> missingChunks) { this.missingChunks = missingChunks; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    
+    public Long getImageId() { return imageId; }
+    public void setImageId(Long imageId) { this.imageId = imageId; }
+}
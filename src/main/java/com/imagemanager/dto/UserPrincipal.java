@@ -0,0 +1,26 @@
+package com.imagemanager.dto;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Security principal that also carries the user's id and role, so request handlers can
+ * identify the logged-in user without looking them up by name.
+ */
+public class UserPrincipal extends User {
+    
+    private final Long id;
+    private final String role;
+    
+    public UserPrincipal(Long id, String username, String password, String role,
+                         Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+        this.role = role;
+    }
+    
+    public Long getId() { return id; }
+    public String getRole() { return role; }
+}
@@ -0,0 +1,53 @@
+package com.imagemanager.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "blobs")
+public class Blob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(unique = true, nullable = false, length = 64)
+    private String hash;
+    
+    @Column(unique = true, nullable = false)
+    private String fileName;
+    
+    @Column(nullable = false)
+    private long size;
+    
+    @Column(nullable = false)
+    private int refCount;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdDate;
+    
+    public Blob() {
+        this.createdDate = LocalDateTime.now();
+    }
+    
+    public Blob(String hash, String fileName, long size, int refCount) {
+        this();
+        this.hash = hash;
+        this.fileName = fileName;
+        this.size = size;
+        this.refCount = refCount;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+    public LocalDateTime getCreatedDate() { return createdDate; }
+    public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
+}
@@ -1,15 +1,36 @@
 package com.imagemanager.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 @Entity
-@Table(name = "images")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "images")
+// Updates write only the changed columns, so the metadata pipeline saving an image it loaded
+// from the cache cannot put back a title or description edited meanwhile
+@DynamicUpdate
+@Table(name = "images", indexes = {
+    @Index(name = "idx_images_upload_date_id", columnList = "uploadDate, id"),
+    @Index(name = "idx_images_dimensions", columnList = "width, height"),
+    @Index(name = "idx_images_media_format", columnList = "mediaFormat"),
+    @Index(name = "idx_images_taken_at", columnList = "takenAt"),
+    @Index(name = "idx_images_camera", columnList = "camera"),
+    @Index(name = "idx_images_metadata_status", columnList = "metadataStatus")
+})
 public class Image {
+    // Ids come from a table generator in blocks of 50, so inserts can be batched; IDENTITY
+    // needs each row inserted on its own to learn its id
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "image_ids")
+    @TableGenerator(name = "image_ids", table = "id_generators", pkColumnName = "name",
+        valueColumnName = "next_val", pkColumnValue = "images", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -26,17 +47,49 @@ public class Image {
     @Column(nullable = false)
     private LocalDateTime uploadDate;
     
+    // Filled in by the metadata pipeline after upload; dimensions are as displayed, after EXIF rotation
+    private Integer width;
+    
+    private Integer height;
+    
+    private String mediaFormat;
+    
+    private LocalDateTime takenAt;
+    
+    private Integer orientation;
+    
+    private String camera;
+    
+    private Long durationMillis;
+    
+    private String metadataStatus;
+    
+    // 64-bit dHash, compared by Hamming distance to find resized or recompressed copies
+    private Long perceptualHash;
+    
+    // Tiny JPEG data URI and #rrggbb colour painted in the card until the image loads
+    @Column(length = 2048)
+    private String placeholder;
+    
+    @Column(length = 7)
+    private String dominantColor;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
     
+    // A set rather than a bag, so adding or removing one tag writes one join row instead of
+    // deleting and re-inserting them all
+    @BatchSize(size = 64)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "image-tags")
+    @OrderBy("name")
     @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(
         name = "image_tags",
         joinColumns = @JoinColumn(name = "image_id"),
         inverseJoinColumns = @JoinColumn(name = "tag_id")
     )
-    private List<Tag> tags = new ArrayList<>();
+    private Set<Tag> tags = new LinkedHashSet<>();
     
     public Image() {
         this.uploadDate = LocalDateTime.now();
@@ -63,19 +116,39 @@ public class Image {
     public void setDescription(String description) { this.description = description; }
     public LocalDateTime getUploadDate() { return uploadDate; }
     public void setUploadDate(LocalDateTime uploadDate) { this.uploadDate = uploadDate; }
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+    public String getMediaFormat() { return mediaFormat; }
+    public void setMediaFormat(String mediaFormat) { this.mediaFormat = mediaFormat; }
+    public LocalDateTime getTakenAt() { return takenAt; }
+    public void setTakenAt(LocalDateTime takenAt) { this.takenAt = takenAt; }
+    public Integer getOrientation() { return orientation; }
+    public void setOrientation(Integer orientation) { this.orientation = orientation; }
+    public String getCamera() { return camera; }
+    public void setCamera(String camera) { this.camera = camera; }
+    public Long getDurationMillis() { return durationMillis; }
+    public void setDurationMillis(Long durationMillis) { this.durationMillis = durationMillis; }
+    public String getMetadataStatus() { return metadataStatus; }
+    public void setMetadataStatus(String metadataStatus) { this.metadataStatus = metadataStatus; }
+    public Long getPerceptualHash() { return perceptualHash; }
+    public void setPerceptualHash(Long perceptualHash) { this.perceptualHash = perceptualHash; }
+    public String getPlaceholder() { return placeholder; }
+    public void setPlaceholder(String placeholder) { this.placeholder = placeholder; }
+    public String getDominantColor() { return dominantColor; }
+    public void setDominantColor(String dominantColor) { this.dominantColor = dominantColor; }
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
-    public List<Tag> getTags() { return tags; }
-    public void setTags(List<Tag> tags) { this.tags = tags; }
+    public Set<Tag> getTags() { return tags; }
+    public void setTags(Set<Tag> tags) { this.tags = tags; }
     
-    public void addTag(Tag tag) {
-        this.tags.add(tag);
-        tag.getImages().add(this);
+    public boolean addTag(Tag tag) {
+        return this.tags.add(tag);
     }
     
-    public void removeTag(Tag tag) {
-        this.tags.remove(tag);
-        tag.getImages().remove(this);
+    public boolean removeTag(Tag tag) {
+        return this.tags.remove(tag);
     }
     
     @Override
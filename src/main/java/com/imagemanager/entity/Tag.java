@@ -1,22 +1,27 @@
 package com.imagemanager.entity;
 
 import jakarta.persistence.*;
-import java.util.ArrayList;
-import java.util.List;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tags")
 @Table(name = "tags")
 public class Tag {
+    public static final int MAX_NAME_LENGTH = 255;
+    
+    // Still IDENTITY: tags are created by TagRepositoryImpl's INSERT IGNORE, which leaves the id
+    // to the database
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(unique = true, nullable = false)
+    @Column(unique = true, nullable = false, length = MAX_NAME_LENGTH)
     private String name;
     
-    @ManyToMany(mappedBy = "tags", fetch = FetchType.LAZY)
-    private List<Image> images = new ArrayList<>();
-    
     public Tag() {}
     
     public Tag(String name) {
@@ -28,6 +33,17 @@ public class Tag {
     public void setId(Long id) { this.id = id; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
-    public List<Image> getImages() { return images; }
-    public void setImages(List<Image> images) { this.images = images; }
+    
+    // Names are unique and set before a tag is used, unlike the generated id
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Tag)) return false;
+        return Objects.equals(getName(), ((Tag) o).getName());
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getName());
+    }
 }
\ No newline at end of file
@@ -1,13 +1,22 @@
 package com.imagemanager.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.time.LocalDateTime;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@BatchSize(size = 64)
 @Table(name = "users")
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_ids")
+    @TableGenerator(name = "user_ids", table = "id_generators", pkColumnName = "name",
+        valueColumnName = "next_val", pkColumnValue = "users", allocationSize = 50)
     private Long id;
     
     @Column(unique = true, nullable = false)
@@ -0,0 +1,29 @@
+package com.imagemanager.repository;
+
+import com.imagemanager.entity.Blob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BlobRepository extends JpaRepository<Blob, Long> {
+    Optional<Blob> findByHash(String hash);
+    Optional<Blob> findByFileName(String fileName);
+    List<Blob> findByFileNameIn(Collection<String> fileNames);
+    
+    // Reference count changes hold the row until commit, so concurrent ones cannot lose an update
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Blob b WHERE b.hash = :hash")
+    Optional<Blob> findLockedByHash(@Param("hash") String hash);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Blob b WHERE b.fileName = :fileName")
+    Optional<Blob> findLockedByFileName(@Param("fileName") String fileName);
+}
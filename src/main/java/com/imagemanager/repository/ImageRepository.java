@@ -1,20 +1,37 @@
 package com.imagemanager.repository;
 
+import com.imagemanager.dto.ImageCard;
+import com.imagemanager.dto.TagSummary;
 import com.imagemanager.entity.Image;
 import com.imagemanager.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+
 @Repository
 public interface ImageRepository extends JpaRepository<Image, Long> {
     
+    String CARD_SELECT = "SELECT new com.imagemanager.dto.ImageCard(i.id, i.title, i.fileName, i.originalFileName, " +
+                         "SUBSTRING(i.description, 1, " + ImageCard.DESCRIPTION_PREVIEW_LENGTH + "), " +
+                         "i.uploadDate, u.username, i.width, i.height, i.placeholder, i.dominantColor) " +
+                         "FROM Image i JOIN i.user u ";
+    
     List<Image> findByUserOrderByUploadDateDesc(User user);
     
     Page<Image> findByUserOrderByUploadDateDesc(User user, Pageable pageable);
@@ -36,6 +53,45 @@ public interface ImageRepository extends JpaRepository<Image, Long> {
     
     Optional<Image> findByFileName(String fileName);
     
+    // Read past the second-level cache and held until commit, so two deletes of a row cannot both proceed
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Image i WHERE i.id = :id")
+    Optional<Image> findLockedById(@Param("id") Long id);
+    
+    boolean existsByFileName(String fileName);
+    
+    long countByFileName(String fileName);
+    
+    List<Image> findByFileNameIn(Collection<String> fileNames);
+    
+    @Query("SELECT i.id FROM Image i ORDER BY i.id")
+    Slice<Long> findAllIds(Pageable pageable);
+    
+    @Query("SELECT DISTINCT i FROM Image i LEFT JOIN FETCH i.tags JOIN FETCH i.user WHERE i.id IN :ids")
+    List<Image> findWithTagsAndUserByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Decodable images read before perceptual hashing or placeholders existed have dimensions but lack them
+    @Query("SELECT i.id, i.fileName, i.perceptualHash, i.dominantColor FROM Image i WHERE i.id > :afterId AND " +
+           "(i.metadataStatus IS NULL OR (i.metadataStatus = 'DONE' AND (i.perceptualHash IS NULL " +
+           "OR i.dominantColor IS NULL) AND i.width IS NOT NULL AND i.durationMillis IS NULL)) ORDER BY i.id")
+    List<Object[]> findPendingMetadataAfter(@Param("afterId") Long afterId, Pageable limit);
+    
+    @Query("SELECT i.id FROM Image i WHERE i.id > :afterId ORDER BY i.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable limit);
+    
+    @Query("SELECT i.id, t.name FROM Image i JOIN i.tags t WHERE i.id BETWEEN :fromId AND :toId")
+    List<Object[]> findTagNamesByImageIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    @Query("SELECT i.id FROM Image i JOIN i.tags t WHERE t.name = :tagName")
+    List<Long> findIdsByTagName(@Param("tagName") String tagName);
+    
+    @Query("SELECT MAX(i.id) FROM Image i")
+    Long findMaxId();
+    
+    @Query("SELECT i.id, i.perceptualHash FROM Image i WHERE i.perceptualHash IS NOT NULL AND i.id > :afterId " +
+           "ORDER BY i.id")
+    List<Object[]> findPerceptualHashesAfter(@Param("afterId") Long afterId, Pageable limit);
+    
     Page<Image> findByUser(User user, Pageable pageable);
     
     @Query("SELECT i FROM Image i WHERE i.user = :user AND LOWER(i.title) LIKE LOWER(CONCAT('%', :title, '%'))")
@@ -47,6 +103,46 @@ public interface ImageRepository extends JpaRepository<Image, Long> {
     @Query("SELECT i FROM Image i ORDER BY i.uploadDate DESC")
     Page<Image> findAllByOrderByUploadDateDesc(Pageable pageable);
     
+    // The dashboard listings are served from the query cache until a write to images, users, tags
+    // or image_tags invalidates them
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HINT_CACHE_REGION, value = "image-listings")})
+    @Query(CARD_SELECT + "ORDER BY i.uploadDate DESC, i.id DESC")
+    List<ImageCard> findFirstKeysetPage(Pageable limit);
+    
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HINT_CACHE_REGION, value = "image-listings")})
+    @Query(CARD_SELECT + "WHERE i.uploadDate < :uploadDate OR (i.uploadDate = :uploadDate AND i.id < :id) " +
+           "ORDER BY i.uploadDate DESC, i.id DESC")
+    List<ImageCard> findKeysetPageAfter(@Param("uploadDate") LocalDateTime uploadDate,
+                                        @Param("id") Long id,
+                                        Pageable limit);
+    
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HINT_CACHE_REGION, value = "image-listings")})
+    @Query(CARD_SELECT + "WHERE i.uploadDate > :uploadDate OR (i.uploadDate = :uploadDate AND i.id > :id) " +
+           "ORDER BY i.uploadDate ASC, i.id ASC")
+    List<ImageCard> findKeysetPageBefore(@Param("uploadDate") LocalDateTime uploadDate,
+                                         @Param("id") Long id,
+                                         Pageable limit);
+    
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HINT_CACHE_REGION, value = "image-listings")})
+    @Query(value = CARD_SELECT + "ORDER BY i.uploadDate DESC, i.id DESC",
+           countQuery = "SELECT COUNT(i) FROM Image i")
+    Page<ImageCard> findCardPage(Pageable pageable);
+    
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HINT_CACHE_REGION, value = "image-listings")})
+    @Query(CARD_SELECT + "WHERE i.id IN :ids")
+    List<ImageCard> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HINT_CACHE_REGION, value = "image-listings")})
+    @Query("SELECT new com.imagemanager.dto.TagSummary(i.id, t.id, t.name) FROM Image i JOIN i.tags t " +
+           "WHERE i.id IN :ids ORDER BY t.name")
+    List<TagSummary> findTagSummariesByImageIdIn(@Param("ids") Collection<Long> ids);
+    
     @Query("SELECT i FROM Image i WHERE " +
            "(LOWER(i.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
            "LOWER(i.description) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
@@ -63,6 +159,8 @@ public interface ImageRepository extends JpaRepository<Image, Long> {
            "ORDER BY i.uploadDate DESC")
     List<Image> searchByQuery(@Param("query") String query);
     
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HINT_CACHE_REGION, value = "image-listings")})
     @Query("SELECT COUNT(i) FROM Image i")
     long countAllImages();
     
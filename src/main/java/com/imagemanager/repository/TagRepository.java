@@ -1,12 +1,34 @@
 package com.imagemanager.repository;
 
 import com.imagemanager.entity.Tag;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TagRepository extends JpaRepository<Tag, Long> {
+public interface TagRepository extends JpaRepository<Tag, Long>, TagRepositoryCustom {
     Optional<Tag> findByName(String name);
-}
\ No newline at end of file
+    List<Tag> findByNameIn(Collection<String> names);
+    
+    // A locking read sees rows committed after the caller's REPEATABLE READ snapshot was taken
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Transactional
+    @Query("SELECT t FROM Tag t WHERE t.name IN :names")
+    List<Tag> findCommittedByNameIn(@Param("names") Collection<String> names);
+    
+    @Query("SELECT t.id, t.name FROM Tag t")
+    List<Object[]> findAllIdsAndNames();
+    
+    // Stops at the first join row instead of loading the images of the tag
+    @Query("SELECT CASE WHEN EXISTS (SELECT 1 FROM Image i JOIN i.tags t WHERE t.id = :tagId) " +
+           "THEN true ELSE false END")
+    boolean isInUse(@Param("tagId") Long tagId);
+}
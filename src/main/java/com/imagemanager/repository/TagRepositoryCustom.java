@@ -0,0 +1,12 @@
+package com.imagemanager.repository;
+
+import java.util.Collection;
+
+public interface TagRepositoryCustom {
+    
+    /**
+     * Inserts every name that does not exist yet in one batched statement. Names that already
+     * exist, including ones inserted concurrently by another request, are skipped.
+     */
+    void insertIgnoringDuplicates(Collection<String> names);
+}
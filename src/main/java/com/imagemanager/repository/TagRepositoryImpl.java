@@ -0,0 +1,28 @@
+package com.imagemanager.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class TagRepositoryImpl implements TagRepositoryCustom {
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public void insertIgnoringDuplicates(Collection<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(names.size());
+        for (String name : names) {
+            rows.add(new Object[] { name });
+        }
+        // Hibernate does not see this insert. New rows cannot make a cached tag stale, and the tag
+        // lookups that would miss them are not query-cached; the join rows go through Hibernate.
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO tags (name) VALUES (?)", rows);
+    }
+}
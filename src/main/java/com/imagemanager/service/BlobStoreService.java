@@ -0,0 +1,308 @@
+package com.imagemanager.service;
+
+import com.imagemanager.dto.DeduplicationReport;
+import com.imagemanager.entity.Blob;
+import com.imagemanager.entity.Image;
+import com.imagemanager.repository.BlobRepository;
+import com.imagemanager.repository.ImageRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Content-addressed storage for uploads. Every distinct file content is kept once on disk as
+ * {@code <sha256><ext>} and reference counted by the {@link Blob} table, so identical uploads
+ * share one physical file and it is only unlinked when the last image referencing it goes away.
+ * Blobs small enough for the {@link PackStoreService} are appended to a pack segment instead
+ * of getting a file of their own. Reference counts are changed under a row lock, and files
+ * are only unlinked once the transaction that dropped the last reference has committed.
+ */
+@Service
+public class BlobStoreService {
+
+    @Autowired
+    private BlobRepository blobRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private PackStoreService packStoreService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Object lock = new Object();
+    private TransactionTemplate ownTransaction;
+
+    @PostConstruct
+    public void init() {
+        ownTransaction = new TransactionTemplate(transactionManager);
+        ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns the content hash encoded in a blob store file name, or null for other files.
+     */
+    public static String contentHash(String fileName) {
+        int dot = fileName.indexOf('.');
+        String baseName = dot >= 0 ? fileName.substring(0, dot) : fileName;
+        boolean hex = baseName.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+        if (baseName.length() != 64 || !hex || fileName.lastIndexOf('.') != dot) {
+            return null;
+        }
+        return baseName;
+    }
+
+    /**
+     * Whether the bytes behind the name can never change: a blob store file, or a derivative
+     * generated from one. Files kept under other names can be overwritten in place.
+     */
+    public static boolean isContentAddressed(String fileName) {
+        if (ThumbnailService.isThumbnail(fileName)) {
+            return contentHash(fileName.substring(0, fileName.indexOf('.'))) != null;
+        }
+        return contentHash(fileName) != null;
+    }
+
+    /**
+     * Copies the stream into the upload directory while hashing it, then either adopts the
+     * written file as a new blob or discards it and takes another reference on the existing one.
+     */
+    public Blob store(InputStream input, String extension) throws IOException {
+        Path uploadPath = storageLayout.root();
+        Files.createDirectories(uploadPath);
+
+        Path temp = uploadPath.resolve("upload-" + UUID.randomUUID() + ".tmp");
+        MessageDigest digest = newDigest();
+        long size;
+        try (DigestInputStream in = new DigestInputStream(input, digest)) {
+            size = Files.copy(in, temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return adopt(temp, HexFormat.of().formatHex(digest.digest()), size, extension);
+    }
+
+    /**
+     * Stores a file that was already written somewhere under the upload directory, moving it
+     * into place instead of copying it. The file is gone afterwards either way.
+     */
+    public Blob storeFile(Path file, String extension) throws IOException {
+        return adopt(file, hash(file), Files.size(file), extension);
+    }
+
+    private Blob adopt(Path temp, String hash, long size, String extension) throws IOException {
+        synchronized (lock) {
+            try {
+                return ownTransaction.execute(status -> {
+                    try {
+                        return adoptLocked(temp, hash, size, extension);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private Blob adoptLocked(Path temp, String hash, long size, String extension) throws IOException {
+        Optional<Blob> existing = blobRepository.findLockedByHash(hash);
+        if (existing.isPresent()) {
+            Files.deleteIfExists(temp);
+            Blob blob = existing.get();
+            blob.setRefCount(blob.getRefCount() + 1);
+            return blobRepository.save(blob);
+        }
+
+        String fileName = hash + (extension != null ? extension.toLowerCase() : "");
+        if (packStoreService.accepts(size)) {
+            try {
+                packStoreService.store(fileName, temp);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } else {
+            Files.move(temp, storageLayout.prepare(fileName), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        return blobRepository.save(new Blob(hash, fileName, size, 1));
+    }
+
+    /**
+     * Takes an extra reference on an existing file, used when a row is created for a file
+     * that is already on disk. Files that predate the blob store are not tracked.
+     */
+    public void retain(String fileName) {
+        synchronized (lock) {
+            ownTransaction.executeWithoutResult(status -> blobRepository.findLockedByFileName(fileName).ifPresent(blob -> {
+                blob.setRefCount(blob.getRefCount() + 1);
+                blobRepository.save(blob);
+            }));
+        }
+    }
+
+    /**
+     * Drops one reference in the caller's transaction, or in one of its own. When it was the
+     * last, the row goes with it and the file and its thumbnails are unlinked after commit;
+     * untracked files are unlinked after commit straight away. Returns true when the file is
+     * to be unlinked.
+     */
+    @Transactional
+    public boolean release(String fileName) {
+        synchronized (lock) {
+            Optional<Blob> tracked = blobRepository.findLockedByFileName(fileName);
+            if (tracked.isPresent()) {
+                Blob blob = tracked.get();
+                if (blob.getRefCount() > 1) {
+                    blob.setRefCount(blob.getRefCount() - 1);
+                    blobRepository.save(blob);
+                    return false;
+                }
+                blobRepository.delete(blob);
+            }
+        }
+        TransactionCallbacks.afterCommit(() -> unlink(fileName));
+        return true;
+    }
+
+    private void unlink(String fileName) {
+        synchronized (lock) {
+            // An upload of the same content may have stored it again since the row was deleted
+            if (ownTransaction.execute(status -> blobRepository.findByFileName(fileName).isPresent())) {
+                return;
+            }
+            try {
+                if (packStoreService.delete(fileName) || storageLayout.delete(fileName)) {
+                    thumbnailService.deleteThumbnails(fileName);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not delete " + fileName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hashes every file in the upload directory, keeps one copy per content under its hash name,
+     * repoints image rows at it and deletes the other copies.
+     */
+    public DeduplicationReport deduplicateUploadDirectory() throws IOException {
+        DeduplicationReport report = new DeduplicationReport();
+        List<Path> files = storageLayout.listFiles().stream()
+                .filter(path -> !ThumbnailService.isThumbnail(path.getFileName().toString()))
+                .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                .collect(Collectors.toList());
+
+        Map<String, List<Path>> byHash = new LinkedHashMap<>();
+        for (Path file : files) {
+            byHash.computeIfAbsent(hash(file), h -> new ArrayList<>()).add(file);
+            report.setFilesScanned(report.getFilesScanned() + 1);
+        }
+
+        synchronized (lock) {
+            for (Map.Entry<String, List<Path>> entry : byHash.entrySet()) {
+                deduplicate(entry.getKey(), entry.getValue(), report);
+            }
+        }
+        return report;
+    }
+
+    private void deduplicate(String hash, List<Path> copies, DeduplicationReport report) throws IOException {
+        Optional<Blob> existing = blobRepository.findByHash(hash);
+
+        String canonicalName;
+        if (existing.isPresent()) {
+            canonicalName = existing.get().getFileName();
+        } else {
+            String name = copies.get(0).getFileName().toString();
+            String extension = name.contains(".") ? name.substring(name.lastIndexOf('.')).toLowerCase() : "";
+            canonicalName = hash + extension;
+        }
+        Path canonical = storageLayout.resolve(canonicalName);
+        if (!Files.exists(canonical) && !packStoreService.contains(canonicalName)) {
+            canonical = storageLayout.prepare(canonicalName);
+            Files.move(copies.get(0), canonical, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        List<String> names = copies.stream().map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        List<Image> images = imageRepository.findByFileNameIn(names);
+        for (Image image : images) {
+            if (!image.getFileName().equals(canonicalName)) {
+                image.setFileName(canonicalName);
+                imageRepository.save(image);
+            }
+        }
+
+        for (Path copy : copies) {
+            if (copy.equals(canonical) || !Files.exists(copy)) {
+                continue;
+            }
+            long size = Files.size(copy);
+            Files.delete(copy);
+            report.setDuplicatesRemoved(report.getDuplicatesRemoved() + 1);
+            report.setBytesReclaimed(report.getBytesReclaimed() + size);
+        }
+        for (String name : names) {
+            if (!name.equals(canonicalName)) {
+                thumbnailService.deleteThumbnails(name);
+            }
+        }
+
+        if (!thumbnailService.hasThumbnails(canonicalName)) {
+            try {
+                thumbnailService.generateThumbnails(canonicalName);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error generating thumbnails for " + canonicalName + ": " + e.getMessage());
+            }
+        }
+
+        Blob blob = existing.orElseGet(() -> new Blob(hash, canonicalName, 0, 0));
+        if (Files.exists(canonical)) {
+            blob.setSize(Files.size(canonical));
+        }
+        blob.setRefCount((int) imageRepository.countByFileName(canonicalName));
+        blobRepository.save(blob);
+    }
+
+    private String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.imagemanager.service;
+
+import com.imagemanager.dto.BulkUploadResult;
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.Tag;
+import com.imagemanager.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Ingests many files in one request. File writes run in parallel on the bounded ingest executor,
+ * the tags of the whole batch are resolved in one call to the tag registry, and the image rows are
+ * saved together. Each file gets its own entry in the returned report, so one bad file does not
+ * fail the batch.
+ */
+@Service
+public class BulkUploadService {
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private TagIndexService tagIndexService;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private DashboardGridCache dashboardGridCache;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private TagRegistryService tagRegistryService;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("ingestExecutor")
+    private ThreadPoolTaskExecutor ingestExecutor;
+
+    public List<BulkUploadResult> upload(List<MultipartFile> files, String description, String tags, User user) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            List<BulkUploadResult> results = ingest(files, description, tags, user);
+            long bytes = files.stream().mapToLong(MultipartFile::getSize).sum();
+            meterRegistry.summary("imagemanager.upload.bytes", "mode", "bulk").record(bytes);
+            return results;
+        } finally {
+            sample.stop(meterRegistry.timer("imagemanager.upload", "mode", "bulk"));
+        }
+    }
+
+    private List<BulkUploadResult> ingest(List<MultipartFile> files, String description, String tags, User user) {
+        List<BulkUploadResult> results = new ArrayList<>();
+        List<Future<BulkUploadResult>> writes = new ArrayList<>();
+
+        for (MultipartFile file : files) {
+            String originalFileName = file.getOriginalFilename();
+            if (originalFileName != null && originalFileName.toLowerCase().endsWith(".zip")) {
+                results.addAll(storeArchive(file));
+            } else if (!file.isEmpty()) {
+                writes.add(ingestExecutor.submit(() -> store(file)));
+            }
+        }
+        for (Future<BulkUploadResult> write : writes) {
+            results.add(await(write));
+        }
+
+        persist(results, description, tags, user);
+        return results;
+    }
+
+    private BulkUploadResult store(MultipartFile file) {
+        BulkUploadResult result = new BulkUploadResult(file.getOriginalFilename());
+        try {
+            result.setFileName(storeBlob(file.getInputStream(), file.getOriginalFilename()));
+            result.setSuccess(true);
+        } catch (IOException | RuntimeException e) {
+            result.setMessage("Failed to store file: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Archive entries can only be read in order, so they are written as the stream is consumed.
+     */
+    private List<BulkUploadResult> storeArchive(MultipartFile archive) {
+        List<BulkUploadResult> results = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || name.startsWith("__MACOSX/")) {
+                    continue;
+                }
+                String originalFileName = name.substring(name.lastIndexOf('/') + 1);
+                BulkUploadResult result = new BulkUploadResult(originalFileName);
+                try {
+                    result.setFileName(storeBlob(StreamUtils.nonClosing(zip), originalFileName));
+                    result.setSuccess(true);
+                } catch (IOException | RuntimeException e) {
+                    result.setMessage("Failed to store file: " + e.getMessage());
+                }
+                results.add(result);
+            }
+        } catch (IOException e) {
+            BulkUploadResult result = new BulkUploadResult(archive.getOriginalFilename());
+            result.setMessage("Failed to read archive: " + e.getMessage());
+            results.add(result);
+        }
+        return results;
+    }
+
+    private String storeBlob(InputStream in, String originalFileName) throws IOException {
+        String extension = "";
+        if (originalFileName != null && originalFileName.contains(".")) {
+            extension = originalFileName.substring(originalFileName.lastIndexOf("."));
+        }
+        String fileName = blobStoreService.store(in, extension).getFileName();
+        if (!thumbnailService.hasThumbnails(fileName)) {
+            try {
+                thumbnailService.generateThumbnails(fileName);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error generating thumbnails for " + fileName + ": " + e.getMessage());
+            }
+        }
+        return fileName;
+    }
+
+    private void persist(List<BulkUploadResult> results, String description, String tags, User user) {
+        List<BulkUploadResult> stored = results.stream().filter(BulkUploadResult::isSuccess)
+                .collect(Collectors.toList());
+        if (stored.isEmpty()) {
+            return;
+        }
+
+        Collection<Tag> batchTags = tagRegistryService.resolveAll(ImageService.parseTagNames(tags)).values();
+
+        List<Image> images = new ArrayList<>();
+        for (BulkUploadResult result : stored) {
+            String originalFileName = result.getOriginalFileName();
+            String title = originalFileName != null && originalFileName.contains(".")
+                    ? originalFileName.substring(0, originalFileName.lastIndexOf('.'))
+                    : originalFileName;
+            Image image = new Image(title, result.getFileName(), originalFileName, user);
+            image.setDescription(description);
+            for (Tag tag : batchTags) {
+                image.addTag(tag);
+            }
+            images.add(image);
+        }
+
+        try {
+            List<Image> saved = imageService.persistAll(images);
+            for (int i = 0; i < saved.size(); i++) {
+                stored.get(i).setImageId(saved.get(i).getId());
+                stored.get(i).setMessage("Uploaded");
+                searchIndexService.index(saved.get(i));
+                tagIndexService.index(saved.get(i));
+            }
+            searchResultCache.invalidate();
+            dashboardGridCache.invalidate();
+            metadataService.enqueueAll(saved);
+        } catch (RuntimeException e) {
+            for (BulkUploadResult result : stored) {
+                result.setSuccess(false);
+                result.setMessage("Failed to save image: " + e.getMessage());
+                blobStoreService.release(result.getFileName());
+            }
+        }
+    }
+
+    private BulkUploadResult await(Future<BulkUploadResult> write) {
+        try {
+            return write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for uploads", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Upload task failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package com.imagemanager.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative int ids in the style of Roaring bitmaps. Ids are grouped by
+ * their high 16 bits; a group holding at most {@value #ARRAY_MAX} ids keeps their low 16 bits
+ * in a sorted array, a fuller one switches to a 65536-bit bitmap, so neither form passes 8 KB.
+ * Intersection, union and difference work group by group, word by word where both sides are
+ * bitmaps. Results of those operations are new bitmaps and never share state with their inputs.
+ * Not thread-safe.
+ */
+public class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public boolean add(int id) {
+        checkId(id);
+        char key = (char) (id >>> 16);
+        int at = find(key);
+        if (at < 0) {
+            at = -at - 1;
+            insert(at, key, new ArrayContainer());
+        }
+        Container container = containers[at];
+        int before = container.cardinality();
+        containers[at] = container.add((char) id);
+        return containers[at].cardinality() > before;
+    }
+
+    public boolean remove(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int at = find((char) (id >>> 16));
+        if (at < 0) {
+            return false;
+        }
+        Container container = containers[at];
+        int before = container.cardinality();
+        containers[at] = container.remove((char) id);
+        if (containers[at].cardinality() == 0) {
+            delete(at);
+            return true;
+        }
+        return containers[at].cardinality() < before;
+    }
+
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int at = find((char) (id >>> 16));
+        return at >= 0 && containers[at].contains((char) id);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to {@code limit} ids in descending order after skipping the {@code offset}
+     * largest. Whole groups are skipped by their cardinality, so deep pages stay cheap.
+     */
+    public int[] descending(int offset, int limit) {
+        int[] page = new int[Math.max(0, Math.min(limit, cardinality() - offset))];
+        int filled = 0;
+        int skip = offset;
+        for (int i = size - 1; i >= 0 && filled < page.length; i--) {
+            Container container = containers[i];
+            if (skip >= container.cardinality()) {
+                skip -= container.cardinality();
+                continue;
+            }
+            filled = container.descending(keys[i] << 16, skip, page, filled);
+            skip = 0;
+        }
+        return page;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeChar(keys[i]);
+            containers[i].write(out);
+        }
+    }
+
+    public static CompressedBitmap read(DataInput in) throws IOException {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        int count = in.readInt();
+        if (count < 0 || count > 1 << 16) {
+            throw new IOException("Corrupt bitmap: " + count + " groups");
+        }
+        for (int i = 0; i < count; i++) {
+            char key = in.readChar();
+            if (i > 0 && key <= bitmap.keys[i - 1]) {
+                throw new IOException("Corrupt bitmap: groups out of order");
+            }
+            bitmap.append(key, Container.read(in));
+        }
+        return bitmap;
+    }
+
+    private static void checkId(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id " + id);
+        }
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int at, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        keys[at] = key;
+        containers[at] = container;
+        size++;
+    }
+
+    private void delete(int at) {
+        System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+        System.arraycopy(containers, at + 1, containers, at, size - at - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Adds a group after all existing ones, dropping it if it ended up empty.
+     */
+    private void append(char key, Container container) {
+        if (container.cardinality() > 0) {
+            insert(size, key, container);
+        }
+    }
+
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container copy();
+
+        /**
+         * Writes the ids of this group into {@code page} from the largest down, after skipping
+         * {@code skip} of them, and returns the new fill level.
+         */
+        abstract int descending(int high, int skip, int[] page, int filled);
+
+        abstract void write(DataOutput out) throws IOException;
+
+        static Container read(DataInput in) throws IOException {
+            int cardinality = in.readInt();
+            if (cardinality <= 0 || cardinality > 1 << 16) {
+                throw new IOException("Corrupt bitmap: group of " + cardinality);
+            }
+            if (cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                for (int i = 0; i < cardinality; i++) {
+                    values[i] = in.readChar();
+                }
+                return new ArrayContainer(values, cardinality);
+            }
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] = in.readLong();
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            int at = Arrays.binarySearch(values, 0, cardinality, low);
+            if (at >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            at = -at - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, Math.min(ARRAY_MAX, cardinality * 2)));
+            }
+            System.arraycopy(values, at, values, at + 1, cardinality - at);
+            values[at] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int at = Arrays.binarySearch(values, 0, cardinality, low);
+            if (at >= 0) {
+                System.arraycopy(values, at + 1, values, at, cardinality - at - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            ArrayContainer union = new ArrayContainer(result, count);
+            return count > ARRAY_MAX ? union.toBitmap() : union;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        int descending(int high, int skip, int[] page, int filled) {
+            for (int i = cardinality - 1 - skip; i >= 0 && filled < page.length; i--) {
+                page[filled++] = high | values[i];
+            }
+            return filled;
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeInt(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                out.writeChar(values[i]);
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before | (1L << low);
+            if (words[low >>> 6] != before) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before & ~(1L << low);
+            if (words[low >>> 6] != before) {
+                cardinality--;
+            }
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return shrink(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] |= 1L << array.values[i];
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] |= otherWords[i];
+                }
+            }
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] &= ~otherWords[i];
+                }
+            }
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            return shrink(result, count);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int descending(int high, int skip, int[] page, int filled) {
+            for (int i = BITMAP_WORDS - 1; i >= 0 && filled < page.length; i--) {
+                long word = words[i];
+                int bits = Long.bitCount(word);
+                if (skip >= bits) {
+                    skip -= bits;
+                    continue;
+                }
+                while (word != 0 && filled < page.length) {
+                    int bit = 63 - Long.numberOfLeadingZeros(word);
+                    word &= ~(1L << bit);
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        page[filled++] = high | (i << 6) | bit;
+                    }
+                }
+            }
+            return filled;
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            if (cardinality <= ARRAY_MAX) {
+                toArray().write(out);
+                return;
+            }
+            out.writeInt(cardinality);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+
+        private static Container shrink(long[] words, int count) {
+            BitmapContainer bitmap = new BitmapContainer(words, count);
+            return count <= ARRAY_MAX ? bitmap.toArray() : bitmap;
+        }
+    }
+}
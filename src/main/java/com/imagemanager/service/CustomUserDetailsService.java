@@ -1,5 +1,6 @@
 package com.imagemanager.service;
 
+import com.imagemanager.dto.UserPrincipal;
 import com.imagemanager.entity.User;
 import com.imagemanager.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,9 +29,11 @@ public class CustomUserDetailsService implements UserDetailsService {
             throw new UsernameNotFoundException("User is disabled: " + username);
         }
 
-        return new org.springframework.security.core.userdetails.User(
+        return new UserPrincipal(
+            user.getId(),
             user.getUsername(),
             user.getPassword(),
+            user.getRole(),
             getAuthorities(user.getRole())
         );
     }
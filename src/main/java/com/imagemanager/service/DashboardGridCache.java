@@ -0,0 +1,120 @@
+package com.imagemanager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Rendered dashboard grids, the page info, cards and pagination of one listing page, by role,
+ * page and size. The listing is the same for everyone and the grid only varies with the role,
+ * so users with the same role share an entry; the navigation and alerts around it are rendered
+ * per request. Only the first {@code dashboard.grid-cache.pages} pages, reached without a
+ * cursor, are cached. Like {@link SearchResultCache}, entries belong to a generation that
+ * {@link #invalidate()} ends once a change to images, their tags or their metadata commits.
+ * Hits and misses are exported as the {@code cache.*} metrics with {@code cache=dashboard-grids}.
+ * The grid's forms carry no per-user state only because CSRF protection is off; turning it on
+ * means rendering the token outside the cached fragment.
+ */
+@Service
+public class DashboardGridCache {
+
+    private static final String TEMPLATE = "dashboard";
+    private static final String FRAGMENT = "grid";
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${dashboard.grid-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dashboard.grid-cache.pages:3}")
+    private int pages;
+
+    @Value("${dashboard.grid-cache.max-size:100}")
+    private long maxSize;
+
+    @Value("${dashboard.grid-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final AtomicLong generation = new AtomicLong();
+    private Cache<Key, Grid> cache;
+
+    /**
+     * The rendered fragment and the listing attributes it was rendered from, which the rest of
+     * the page also shows.
+     */
+    public record Grid(String html, Map<String, Object> attributes) {
+    }
+
+    private record Key(String role, int page, int size, long generation) {
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "dashboard-grids");
+    }
+
+    public boolean isCacheable(int page, String cursor) {
+        return enabled && cursor == null && page >= 0 && page < pages;
+    }
+
+    /**
+     * Returns the grid for the page. On a miss {@code listing} adds the listing attributes to
+     * an empty model and the grid fragment of the dashboard template is rendered from them.
+     * Concurrent misses on the same page wait for one render.
+     */
+    public Grid get(String role, int page, int size, Consumer<Model> listing,
+                    HttpServletRequest request, HttpServletResponse response) {
+        Key key = new Key(role, page, size, generation.get());
+        return cache.get(key, k -> render(role, size, listing, request, response));
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private Grid render(String role, int size, Consumer<Model> listing,
+                        HttpServletRequest request, HttpServletResponse response) {
+        Model model = new ExtendedModelMap();
+        listing.accept(model);
+        Map<String, Object> variables = new HashMap<>(model.asMap());
+        variables.put("userRole", role);
+        variables.put("pageSize", size);
+
+        // Links in the fragment need the request for the context path
+        WebContext context = new WebContext(JakartaServletWebApplication.buildApplication(request.getServletContext())
+                .buildExchange(request, response), request.getLocale(), variables);
+        String html = meterRegistry.timer("imagemanager.dashboard.grid.render")
+                .record(() -> templateEngine.process(TEMPLATE, Set.of(FRAGMENT), context));
+        return new Grid(html, Collections.unmodifiableMap(new HashMap<>(model.asMap())));
+    }
+}
@@ -0,0 +1,51 @@
+package com.imagemanager.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Every file directly in the upload directory, as the application always stored them.
+ */
+public class FlatStorageLayout implements StorageLayout {
+
+    private final Path root;
+
+    public FlatStorageLayout(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public Path root() {
+        return root;
+    }
+
+    @Override
+    public Path resolve(String fileName) {
+        return root.resolve(fileName);
+    }
+
+    @Override
+    public Path prepare(String fileName) throws IOException {
+        Files.createDirectories(root);
+        return root.resolve(fileName);
+    }
+
+    @Override
+    public boolean delete(String fileName) throws IOException {
+        return Files.deleteIfExists(root.resolve(fileName));
+    }
+
+    @Override
+    public List<Path> listFiles() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> listing = Files.list(root)) {
+            return listing.filter(ShardedStorageLayout::isVisibleFile).collect(Collectors.toList());
+        }
+    }
+}
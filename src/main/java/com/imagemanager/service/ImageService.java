@@ -1,23 +1,40 @@
 package com.imagemanager.service;
 
+import com.imagemanager.dto.CursorPage;
+import com.imagemanager.dto.ImageCard;
+import com.imagemanager.dto.NearDuplicate;
+import com.imagemanager.dto.PageCursor;
+import com.imagemanager.dto.SavedImage;
+import com.imagemanager.dto.TagSummary;
 import com.imagemanager.entity.Image;
 import com.imagemanager.entity.Tag;
 import com.imagemanager.entity.User;
+import com.imagemanager.repository.BlobRepository;
 import com.imagemanager.repository.ImageRepository;
 import com.imagemanager.repository.TagRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,11 +43,68 @@ public class ImageService {
 	@Autowired
 	private ImageRepository imageRepository;
 
+	@Autowired
+	private BlobRepository blobRepository;
+
+	@Autowired
+	private TagRegistryService tagRegistryService;
+
 	@Autowired
 	private TagRepository tagRepository;
 
-	@Value("${file.upload-dir:./uploads}")
-	private String uploadDir;
+	@Autowired
+	private ThumbnailService thumbnailService;
+
+	@Autowired
+	private BlobStoreService blobStoreService;
+
+	@Autowired
+	private SearchIndexService searchIndexService;
+
+	@Autowired
+	private TagIndexService tagIndexService;
+
+	@Autowired
+	private SearchResultCache searchResultCache;
+
+	@Autowired
+	private DashboardGridCache dashboardGridCache;
+
+	@Autowired
+	private MetadataService metadataService;
+
+	@Autowired
+	private PerceptualHashService perceptualHashService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private StorageLayout storageLayout;
+
+	@Autowired
+	private PackStoreService packStoreService;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+	private int batchSize;
+
+	@Value("${pagination.count-cache-seconds:60}")
+	private long countCacheSeconds;
+
+	@Value("${duplicates.warn-on-upload:true}")
+	private boolean warnOnUpload;
+
+	@Value("${duplicates.warn-radius:6}")
+	private int warnRadius;
+
+	private volatile long cachedImageCount = -1;
+	private volatile long cachedImageCountAt;
 
 	public Page<Image> getPaginatedImages(User user, Pageable pageable) {
 		return imageRepository.findByUserOrderByUploadDateDesc(user, pageable);
@@ -40,7 +114,18 @@ public class ImageService {
 		if (query == null || query.trim().isEmpty()) {
 			return imageRepository.findByUserOrderByUploadDateDesc(user, pageable);
 		}
-		return imageRepository.searchByUserAndQuery(user, query, pageable);
+		if (searchIndexService.isReady()) {
+			return timeSearch("index", () -> loadPage(searchIndexService.search(query, user.getId(), pageable)));
+		}
+		return timeSearch("database", () -> imageRepository.searchByUserAndQuery(user, query, pageable));
+	}
+
+	private Page<Image> loadPage(Page<Long> idPage) {
+		Map<Long, Image> imagesById = imageRepository.findAllById(idPage.getContent()).stream()
+				.collect(Collectors.toMap(Image::getId, image -> image));
+		List<Image> images = idPage.getContent().stream().map(imagesById::get).filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		return new PageImpl<>(images, idPage.getPageable(), idPage.getTotalElements());
 	}
 
 	public List<Image> getAllImages(User user) {
@@ -50,17 +135,16 @@ public class ImageService {
 		allImages.addAll(dbImages);
 
 		try {
-			Path uploadPath = Paths.get(uploadDir);
-			if (Files.exists(uploadPath)) {
-				List<Path> fileSystemImages = Files.list(uploadPath).filter(path -> !Files.isDirectory(path))
-						.filter(this::isImageFile).collect(Collectors.toList());
+			List<Path> fileSystemImages = storageLayout.listFiles().stream().filter(ImageService::isImageFile)
+					.collect(Collectors.toList());
+			if (!fileSystemImages.isEmpty()) {
+
+				Set<String> dbFileNames = dbImages.stream().map(Image::getFileName).collect(Collectors.toSet());
 
 				for (Path filePath : fileSystemImages) {
 					String fileName = filePath.getFileName().toString();
 
-					boolean existsInDb = dbImages.stream().anyMatch(img -> img.getFileName().equals(fileName));
-
-					if (!existsInDb) {
+					if (!dbFileNames.contains(fileName)) {
 						Image fsImage = createImageFromFile(filePath, user);
 						allImages.add(fsImage);
 					}
@@ -99,8 +183,11 @@ public class ImageService {
 				.collect(Collectors.toList());
 	}
 
-	private boolean isImageFile(Path path) {
+	public static boolean isImageFile(Path path) {
 		String fileName = path.getFileName().toString().toLowerCase();
+		if (ThumbnailService.isThumbnail(fileName)) {
+			return false;
+		}
 		return fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") || fileName.endsWith(".png")
 				|| fileName.endsWith(".gif") || fileName.endsWith(".bmp") || fileName.endsWith(".webp")
 				|| fileName.endsWith(".mp4") || fileName.endsWith(".mp4");
@@ -146,51 +233,208 @@ public class ImageService {
 		return image;
 	}
 
-	public Image saveImage(MultipartFile file, String title, String description, String tags, User user)
+	public SavedImage saveImage(MultipartFile file, String title, String description, String tags, User user)
 			throws IOException {
-		Path uploadPath = Paths.get(uploadDir);
-		if (!Files.exists(uploadPath)) {
-			Files.createDirectories(uploadPath);
+		Timer.Sample sample = Timer.start(meterRegistry);
+		try {
+			SavedImage saved = storeImage(file, title, description, tags, user);
+			meterRegistry.summary("imagemanager.upload.bytes", "mode", "single").record(file.getSize());
+			return saved;
+		} finally {
+			sample.stop(meterRegistry.timer("imagemanager.upload", "mode", "single"));
 		}
+	}
 
-		String originalFileName = file.getOriginalFilename();
-		String fileExtension = "";
-		if (originalFileName != null && originalFileName.contains(".")) {
-			fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
+	/**
+	 * Saves an image whose content was already assembled in a file under the upload directory,
+	 * such as a finished resumable upload. The file is moved into the blob store, not copied.
+	 */
+	public Image saveUploadedFile(Path file, String originalFileName, String title, String description, String tags,
+			User user) throws IOException {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		try {
+			long size = Files.size(file);
+			String fileName = blobStoreService.storeFile(file, extensionOf(originalFileName)).getFileName();
+			Image saved = createImage(fileName, originalFileName, title, description, tags, user).image();
+			meterRegistry.summary("imagemanager.upload.bytes", "mode", "resumable").record(size);
+			return saved;
+		} finally {
+			sample.stop(meterRegistry.timer("imagemanager.upload", "mode", "resumable"));
 		}
-		String fileName = UUID.randomUUID().toString() + fileExtension;
+	}
 
-		Path filePath = uploadPath.resolve(fileName);
-		Files.copy(file.getInputStream(), filePath);
+	private SavedImage storeImage(MultipartFile file, String title, String description, String tags, User user)
+			throws IOException {
+		String originalFileName = file.getOriginalFilename();
+		String fileName = blobStoreService.store(file.getInputStream(), extensionOf(originalFileName)).getFileName();
+		return createImage(fileName, originalFileName, title, description, tags, user);
+	}
+
+	private SavedImage createImage(String fileName, String originalFileName, String title, String description, String tags,
+			User user) {
+		if (!thumbnailService.hasThumbnails(fileName)) {
+			try {
+				thumbnailService.generateThumbnails(fileName);
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Error generating thumbnails for " + fileName + ": " + e.getMessage());
+			}
+		}
 
 		Image image = new Image(title, fileName, originalFileName, user);
 		image.setDescription(description);
 
-		if (tags != null && !tags.trim().isEmpty()) {
-			String[] tagNames = tags.split(",");
-			for (String tagName : tagNames) {
-				String cleanedTag = tagName.trim().toLowerCase();
-				if (!cleanedTag.isEmpty()) {
-					Tag tag = tagRepository.findByName(cleanedTag)
-							.orElseGet(() -> tagRepository.save(new Tag(cleanedTag)));
-					image.addTag(tag);
-				}
+		for (Tag tag : tagRegistryService.resolveAll(parseTagNames(tags)).values()) {
+			image.addTag(tag);
+		}
+
+		// Hashed now rather than by the metadata pipeline so the uploader can be told at once
+		List<Long> nearDuplicateIds = new ArrayList<>();
+		if (warnOnUpload) {
+			try {
+				image.setPerceptualHash(perceptualHashService.compute(fileName));
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Could not hash " + fileName + ": " + e.getMessage());
+			}
+			if (image.getPerceptualHash() != null) {
+				perceptualHashService.findNearDuplicates(image.getPerceptualHash(), warnRadius)
+						.forEach(match -> nearDuplicateIds.add(match.id()));
 			}
 		}
 
-		return imageRepository.save(image);
+		Image saved = imageRepository.save(image);
+		searchIndexService.index(saved);
+		tagIndexService.index(saved);
+		invalidateListings();
+		perceptualHashService.index(saved.getId(), saved.getPerceptualHash());
+		metadataService.enqueue(saved);
+		if (!nearDuplicateIds.isEmpty()) {
+			System.out.println("Upload " + saved.getId() + " looks like existing images " + nearDuplicateIds);
+		}
+		return new SavedImage(saved, nearDuplicateIds);
+	}
+
+	private static String extensionOf(String originalFileName) {
+		if (originalFileName != null && originalFileName.contains(".")) {
+			return originalFileName.substring(originalFileName.lastIndexOf("."));
+		}
+		return "";
+	}
+
+	/**
+	 * Splits a comma-separated tag list into trimmed, lower-cased, de-duplicated names.
+	 */
+	public static Set<String> parseTagNames(String tags) {
+		Set<String> names = new LinkedHashSet<>();
+		if (tags == null || tags.trim().isEmpty()) {
+			return names;
+		}
+		for (String tagName : tags.split(",")) {
+			String cleanedTag = tagName.trim().toLowerCase();
+			if (!cleanedTag.isEmpty()) {
+				names.add(cleanedTag);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the other images within {@code radius} bits of the image's perceptual hash,
+	 * closest first. Images that have not been hashed yet have none.
+	 */
+	public List<NearDuplicate> findNearDuplicates(Image image, int radius) {
+		if (image.getPerceptualHash() == null) {
+			return List.of();
+		}
+		List<MultiIndexHash.Match> matches = perceptualHashService.findNearDuplicates(image.getPerceptualHash(), radius)
+				.stream().filter(match -> match.id() != image.getId()).collect(Collectors.toList());
+		Map<Long, ImageCard> cardsById = imageRepository.findCardsByIdIn(matches.stream().map(MultiIndexHash.Match::id)
+				.collect(Collectors.toList())).stream().collect(Collectors.toMap(ImageCard::getId, card -> card));
+
+		List<NearDuplicate> nearDuplicates = new ArrayList<>();
+		for (MultiIndexHash.Match match : matches) {
+			ImageCard card = cardsById.get(match.id());
+			if (card != null) {
+				nearDuplicates.add(new NearDuplicate(card.getId(), card.getTitle(), card.getFileName(), match.distance()));
+			}
+		}
+		return nearDuplicates;
+	}
+
+	public Path getImagePath(String fileName) throws IOException {
+		Path filePath = storageLayout.resolve(fileName);
+		if (!Files.exists(filePath)) {
+			throw new IOException("Image file not found: " + fileName);
+		}
+		return filePath;
 	}
 
 	public byte[] getImageData(String fileName) throws IOException {
-		Path filePath = Paths.get(uploadDir).resolve(fileName);
+		ByteBuffer packed = packStoreService.read(fileName);
+		if (packed != null) {
+			byte[] data = new byte[packed.remaining()];
+			packed.get(data);
+			return data;
+		}
+		Path filePath = storageLayout.resolve(fileName);
 		if (!Files.exists(filePath)) {
 			throw new IOException("Image file not found: " + fileName);
 		}
 		return Files.readAllBytes(filePath);
 	}
 
-	public void deleteImage(Long imageId, User user) throws IOException {
+	/**
+	 * Adds a tag to an image, creating the tag if it is new. Writes one join row, or nothing
+	 * when the image already has the tag. The in-memory indexes follow once it commits.
+	 */
+	@Transactional
+	public Tag addTag(Long imageId, String tagName) {
+		Image image = getImageById(imageId);
+		Tag tag = tagRegistryService.resolve(tagName);
+		if (image.addTag(tag)) {
+			// Loaded now, the search index reads the uploader after commit
+			Hibernate.initialize(image.getUser());
+			TransactionCallbacks.afterCommit(() -> {
+				searchIndexService.index(image);
+				tagIndexService.addTag(imageId, tag.getName());
+			});
+			invalidateListings();
+		}
+		return tag;
+	}
+
+	/**
+	 * Removes a tag from an image, deleting the tag once no image carries it any more. The
+	 * in-memory indexes and the registry follow once it commits.
+	 */
+	@Transactional
+	public Tag removeTag(Long imageId, Long tagId) {
 		Image image = getImageById(imageId);
+		Tag tag = tagRepository.findById(tagId).orElseThrow(() -> new RuntimeException("Tag not found"));
+		if (image.removeTag(tag)) {
+			Hibernate.initialize(image.getUser());
+			TransactionCallbacks.afterCommit(() -> {
+				searchIndexService.index(image);
+				tagIndexService.removeTag(imageId, tag.getName());
+			});
+			invalidateListings();
+		}
+		// The query flushes the removed join row first, so it sees this image as untagged
+		if (!tagRepository.isInUse(tagId)) {
+			tagRepository.delete(tag);
+			TransactionCallbacks.afterCommit(() -> tagRegistryService.evict(tag.getName()));
+		}
+		return tag;
+	}
+
+	/**
+	 * Deletes an image and drops its reference on the file in one transaction. The row is locked
+	 * first, so a delete submitted twice finds it gone the second time instead of releasing the
+	 * file again.
+	 */
+	@Transactional
+	public void deleteImage(Long imageId, User user) {
+		Image image = imageRepository.findLockedById(imageId)
+				.orElseThrow(() -> new RuntimeException("Image not found with id: " + imageId));
 
 		String userRole = user.getRole(); // Or however you get the role
 
@@ -199,60 +443,262 @@ public class ImageService {
 			throw new RuntimeException("Not authorized to delete this image");
 		}
 
-		Path filePath = Paths.get(uploadDir).resolve(image.getFileName());
-		if (Files.exists(filePath)) {
-			Files.delete(filePath);
-		}
-
-		imageRepository.delete(image);
+		delete(image);
 	}
 
-	public void syncFileSystemImages(User user) {
-		try {
-			Path uploadPath = Paths.get(uploadDir);
-			if (Files.exists(uploadPath)) {
-				List<Path> fileSystemImages = Files.list(uploadPath).filter(path -> !Files.isDirectory(path))
-						.filter(this::isImageFile).collect(Collectors.toList());
-
-				for (Path filePath : fileSystemImages) {
-					String fileName = filePath.getFileName().toString();
-
-					boolean existsInDb = imageRepository.findByFileName(fileName).isPresent();
+	/**
+	 * Replaces an image's description and reindexes it.
+	 */
+	public Image updateDescription(Long imageId, String description) {
+		Image image = imageRepository.findById(imageId)
+				.orElseThrow(() -> new RuntimeException("Image not found"));
+		image.setDescription(description);
+		Image saved = imageRepository.save(image);
+		searchIndexService.index(saved);
+		invalidateListings();
+		return saved;
+	}
 
-					if (!existsInDb) {
-						Image fsImage = createImageFromFile(filePath, user);
-						imageRepository.save(fsImage);
+	/**
+	 * Inserts new images in JDBC batches of {@code hibernate.jdbc.batch_size}, flushing and
+	 * clearing the persistence context after each batch so it does not grow with the list.
+	 * Everything the context held before is detached too, including entities the caller loaded.
+	 * Tags are re-read into the context before each image is persisted; the images come back
+	 * detached, with their ids and initialised tags. Joins the caller's transaction or runs in
+	 * its own.
+	 */
+	public List<Image> persistAll(List<Image> images) {
+		return transactionTemplate.execute(status -> {
+			Map<Long, Tag> managedTags = new HashMap<>();
+			for (int i = 0; i < images.size(); i++) {
+				Image image = images.get(i);
+				Set<Tag> tags = new LinkedHashSet<>();
+				for (Tag tag : image.getTags()) {
+					Tag managed = managedTags.computeIfAbsent(tag.getId(), id -> entityManager.find(Tag.class, id));
+					if (managed == null) {
+						throw new IllegalStateException("Tag " + tag.getName() + " no longer exists");
 					}
+					tags.add(managed);
+				}
+				image.setTags(tags);
+				entityManager.persist(image);
+				if ((i + 1) % batchSize == 0) {
+					entityManager.flush();
+					entityManager.clear();
+					managedTags.clear();
 				}
 			}
-		} catch (IOException e) {
-			System.err.println("Error syncing file system images: " + e.getMessage());
+			entityManager.flush();
+			entityManager.clear();
+			return images;
+		});
+	}
+
+	/**
+	 * Creates rows for files that appeared in the upload directory without going through an
+	 * upload. Files that already have a row or are owned by the blob store are skipped, so
+	 * the whole batch costs two lookups and the batched inserts of {@link #persistAll(List)}.
+	 */
+	public List<Image> ingestFiles(List<Path> files, User owner) {
+		if (files.isEmpty()) {
+			return List.of();
+		}
+		List<String> fileNames = files.stream().map(path -> path.getFileName().toString())
+				.collect(Collectors.toList());
+		Set<String> known = new HashSet<>();
+		imageRepository.findByFileNameIn(fileNames).forEach(image -> known.add(image.getFileName()));
+		blobRepository.findByFileNameIn(fileNames).forEach(blob -> known.add(blob.getFileName()));
+
+		List<Image> created = new ArrayList<>();
+		for (Path file : files) {
+			if (!known.contains(file.getFileName().toString()) && Files.isRegularFile(file)) {
+				created.add(createImageFromFile(file, owner));
+			}
+		}
+		if (created.isEmpty()) {
+			return created;
+		}
+
+		List<Image> saved = persistAll(created);
+		for (Image image : saved) {
+			searchIndexService.index(image);
+			tagIndexService.index(image);
 		}
+		invalidateListings();
+		metadataService.enqueueAll(saved);
+		return saved;
 	}
 
 	public Page<Image> getPaginatedImages(Pageable pageable) {
 		return imageRepository.findAllByOrderByUploadDateDesc(pageable);
 	}
 
+	/**
+	 * Fetches one page of gallery cards in (uploadDate, id) descending order by seeking from the
+	 * cursor row, so the cost does not grow with page depth and no COUNT is issued. Cards and
+	 * their tags are loaded in two statements regardless of page size.
+	 */
+	public CursorPage<ImageCard> getImageCardsByCursor(String cursorToken, int size) {
+		PageCursor cursor = PageCursor.decode(cursorToken);
+		Pageable limit = PageRequest.of(0, size + 1);
+
+		List<ImageCard> rows;
+		boolean hasNext;
+		boolean hasPrevious;
+		if (cursor == null) {
+			rows = new ArrayList<>(imageRepository.findFirstKeysetPage(limit));
+			hasNext = rows.size() > size;
+			hasPrevious = false;
+			trim(rows, size);
+		} else if (cursor.isAfter()) {
+			rows = new ArrayList<>(imageRepository.findKeysetPageAfter(cursor.getUploadDate(), cursor.getId(), limit));
+			hasNext = rows.size() > size;
+			hasPrevious = true;
+			trim(rows, size);
+		} else {
+			rows = new ArrayList<>(imageRepository.findKeysetPageBefore(cursor.getUploadDate(), cursor.getId(), limit));
+			hasPrevious = rows.size() > size;
+			hasNext = true;
+			trim(rows, size);
+			Collections.reverse(rows);
+		}
+
+		if (rows.isEmpty()) {
+			return new CursorPage<>(rows, null, null);
+		}
+		attachTags(rows);
+		ImageCard first = rows.get(0);
+		ImageCard last = rows.get(rows.size() - 1);
+		String next = hasNext ? PageCursor.after(last.getUploadDate(), last.getId()).encode() : null;
+		String previous = hasPrevious ? PageCursor.before(first.getUploadDate(), first.getId()).encode() : null;
+		return new CursorPage<>(rows, next, previous);
+	}
+
+	public Page<ImageCard> getImageCardPage(Pageable pageable) {
+		Page<ImageCard> cards = imageRepository.findCardPage(pageable);
+		attachTags(cards.getContent());
+		return cards;
+	}
+
+	/**
+	 * Searches all images. The ids of each result page come from the search result cache, so a
+	 * repeated query only loads its cards.
+	 */
+	public Page<ImageCard> searchImageCards(String query, Pageable pageable) {
+		if (query == null || query.trim().isEmpty()) {
+			return getImageCardPage(pageable);
+		}
+		String normalized = SearchResultCache.normalize(query);
+		return loadCardPage(searchResultCache.get(normalized, pageable, () -> searchImageIds(normalized, pageable)));
+	}
+
+	private Page<Long> searchImageIds(String query, Pageable pageable) {
+		// Queries written with tag:name terms are boolean filters, answered from the tag bitmaps
+		TagQuery tagQuery = TagQuery.parse(query);
+		if (tagQuery != null) {
+			return timeSearch("tags", () -> tagIndexService.search(tagQuery, pageable));
+		}
+		if (searchIndexService.isReady()) {
+			return timeSearch("index", () -> searchIndexService.search(query, pageable));
+		}
+		return timeSearch("database", () -> imageRepository.searchByQuery(query, pageable).map(Image::getId));
+	}
+
+	/**
+	 * Loads the cards for one page of ids, keeping the order of the ids.
+	 */
+	private Page<ImageCard> loadCardPage(Page<Long> idPage) {
+		Map<Long, ImageCard> cardsById = imageRepository.findCardsByIdIn(idPage.getContent()).stream()
+				.collect(Collectors.toMap(ImageCard::getId, card -> card));
+		List<ImageCard> cards = idPage.getContent().stream().map(cardsById::get).filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		attachTags(cards);
+		return new PageImpl<>(cards, idPage.getPageable(), idPage.getTotalElements());
+	}
+
+	/**
+	 * Drops the cached search pages and dashboard grids once a change to images or their tags
+	 * has committed. Dropped earlier, a listing read before the commit would be cached again
+	 * under the new generation, with the old rows.
+	 */
+	private void invalidateListings() {
+		TransactionCallbacks.afterCommit(() -> {
+			searchResultCache.invalidate();
+			dashboardGridCache.invalidate();
+		});
+	}
+
+	/**
+	 * Records the search under the path that answered it: the in-memory index or the database.
+	 */
+	private <T> T timeSearch(String path, Supplier<T> search) {
+		return meterRegistry.timer("imagemanager.search", "path", path).record(search);
+	}
+
+	private void attachTags(List<ImageCard> cards) {
+		if (cards.isEmpty()) {
+			return;
+		}
+		List<Long> ids = cards.stream().map(ImageCard::getId).collect(Collectors.toList());
+		Map<Long, List<TagSummary>> tagsByImage = imageRepository.findTagSummariesByImageIdIn(ids).stream()
+				.collect(Collectors.groupingBy(TagSummary::getImageId));
+		for (ImageCard card : cards) {
+			card.setTags(tagsByImage.getOrDefault(card.getId(), new ArrayList<>()));
+		}
+	}
+
+	/**
+	 * Total image count, refreshed at most every {@code pagination.count-cache-seconds}.
+	 */
+	public long getApproximateImageCount() {
+		long now = System.currentTimeMillis();
+		if (cachedImageCount < 0 || now - cachedImageCountAt > countCacheSeconds * 1000) {
+			cachedImageCount = imageRepository.count();
+			cachedImageCountAt = now;
+		}
+		return cachedImageCount;
+	}
+
+	private <T> void trim(List<T> rows, int size) {
+		while (rows.size() > size) {
+			rows.remove(rows.size() - 1);
+		}
+	}
+
 	public Page<Image> searchImagesPaginated(String query, Pageable pageable) {
 		if (query == null || query.trim().isEmpty()) {
 			return imageRepository.findAllByOrderByUploadDateDesc(pageable);
 		}
-		return imageRepository.searchByQuery(query, pageable);
+		if (searchIndexService.isReady()) {
+			return timeSearch("index", () -> loadPage(searchIndexService.search(query, pageable)));
+		}
+		return timeSearch("database", () -> imageRepository.searchByQuery(query, pageable));
 	}
 
+	@Transactional
 	public void deleteImageById(Long id) {
-		Image image = imageRepository.findById(id)
+		Image image = imageRepository.findLockedById(id)
 				.orElseThrow(() -> new RuntimeException("Image not found with id: " + id));
+		delete(image);
+	}
 
-		try {
-			Path filePath = Paths.get(uploadDir, image.getFileName());
-			Files.deleteIfExists(filePath);
-			System.out.println("Deleted file: " + filePath.toString());
-		} catch (IOException e) {
-			System.out.println("Warning: Could not delete physical file: " + e.getMessage());
-		}
+	/**
+	 * Deletes a locked row and its file reference in the caller's transaction. The file, the
+	 * in-memory indexes and the listings follow once it commits.
+	 */
+	private void delete(Image image) {
+		Long imageId = image.getId();
+		// The tag index needs the names after commit, when the collection can no longer be loaded
+		Hibernate.initialize(image.getTags());
 
+		blobStoreService.release(image.getFileName());
 		imageRepository.delete(image);
+
+		TransactionCallbacks.afterCommit(() -> {
+			tagIndexService.remove(image);
+			searchIndexService.remove(imageId);
+			perceptualHashService.remove(image);
+		});
+		invalidateListings();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,319 @@
+package com.imagemanager.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streams files to the client without buffering them on the heap. Full and single-range
+ * responses use Tomcat's sendfile when the connector offers it, otherwise every response
+ * body is copied with {@link FileChannel#transferTo}. Supports {@code Range} requests,
+ * including multi-range {@code multipart/byteranges} responses, and conditional requests.
+ * Blobs kept in a pack segment are written straight from the segment's mapping.
+ */
+@Service
+public class MediaStreamingService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int SNIFF_LENGTH = 16;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Answers conditional requests from the file's attributes alone, so a matching
+     * {@code If-None-Match} or {@code If-Modified-Since} gets a 304 without the file being opened.
+     */
+    public void stream(Path file, CacheControl cacheControl, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        stream(new Body(file.getFileName().toString(), file, null, attributes.size(),
+                attributes.lastModifiedTime().toMillis()), cacheControl, request, response);
+    }
+
+    /**
+     * Streams a blob held in memory or in a mapped pack segment. There is no modification
+     * time, so conditional requests are answered from the ETag alone.
+     */
+    public void stream(String fileName, ByteBuffer content, CacheControl cacheControl, HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        stream(new Body(fileName, null, content, content.remaining(), -1), cacheControl, request, response);
+    }
+
+    private void stream(Body body, CacheControl cacheControl, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long bytes = serve(body, cacheControl, request, response);
+        String status = String.valueOf(response.getStatus());
+        sample.stop(meterRegistry.timer("imagemanager.serve", "status", status));
+        meterRegistry.summary("imagemanager.serve.bytes", "status", status)
+                .record("HEAD".equals(request.getMethod()) ? 0 : bytes);
+    }
+
+    /**
+     * Writes the response and returns the number of body bytes sent.
+     */
+    private long serve(Body body, CacheControl cacheControl, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long length = body.length();
+        long lastModified = body.lastModified();
+        String etag = etag(body);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return 0;
+        }
+
+        MediaType contentType = body.file() != null
+                ? detectContentType(body.file())
+                : detectContentType(body.fileName(), body.buffer());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> ranges;
+        try {
+            ranges = ifRangeMatches(request, etag, lastModified)
+                    ? HttpRange.parseRanges(request.getHeader(HttpHeaders.RANGE))
+                    : List.of();
+            for (HttpRange range : ranges) {
+                if (range.getRangeStart(length) >= length || range.getRangeStart(length) > range.getRangeEnd(length)) {
+                    throw new IllegalArgumentException("Unsatisfiable range: " + range);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return 0;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(length);
+            send(body, 0, length, request, response);
+            return length;
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            send(body, start, end - start + 1, request, response);
+            return end - start + 1;
+        } else {
+            sendMultipart(body, length, contentType, ranges, request, response);
+            return ranges.stream().mapToLong(range -> range.getRangeEnd(length) - range.getRangeStart(length) + 1).sum();
+        }
+    }
+
+    /**
+     * Strong validator for a file: the content hash for blob store files, otherwise a token
+     * built from the size and modification time.
+     */
+    private String etag(Body body) {
+        String hash = BlobStoreService.contentHash(body.fileName());
+        if (hash != null) {
+            return "\"" + hash + "\"";
+        }
+        return "\"" + Long.toHexString(body.length()) + "-" + Long.toHexString(body.lastModified()) + "\"";
+    }
+
+    /**
+     * A range is only honoured when {@code If-Range} is absent or still matches the file,
+     * otherwise the whole file is sent.
+     */
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Identifies the media type from the file's leading magic bytes, falling back to the
+     * file extension and finally {@code application/octet-stream}.
+     */
+    public MediaType detectContentType(Path file) throws IOException {
+        byte[] head = new byte[SNIFF_LENGTH];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(head, 0, head.length);
+        }
+
+        MediaType sniffed = sniff(head, read);
+        if (sniffed != null) {
+            return sniffed;
+        }
+        return MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    public MediaType detectContentType(String fileName, ByteBuffer content) {
+        byte[] head = new byte[Math.min(SNIFF_LENGTH, content.remaining())];
+        content.duplicate().get(head);
+
+        MediaType sniffed = sniff(head, head.length);
+        if (sniffed != null) {
+            return sniffed;
+        }
+        return MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * Identifies the media type from a file's leading bytes alone, or returns null.
+     */
+    public MediaType sniff(byte[] head, int length) {
+        if (startsWith(head, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (startsWith(head, length, 0, 0x89, 'P', 'N', 'G')) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (startsWith(head, length, 0, 'G', 'I', 'F', '8')) {
+            return MediaType.IMAGE_GIF;
+        }
+        if (startsWith(head, length, 0, 'B', 'M')) {
+            return MediaType.parseMediaType("image/bmp");
+        }
+        if (startsWith(head, length, 0, 'R', 'I', 'F', 'F') && startsWith(head, length, 8, 'W', 'E', 'B', 'P')) {
+            return MediaType.parseMediaType("image/webp");
+        }
+        if (startsWith(head, length, 0, 'R', 'I', 'F', 'F') && startsWith(head, length, 8, 'A', 'V', 'I', ' ')) {
+            return MediaType.parseMediaType("video/x-msvideo");
+        }
+        if (startsWith(head, length, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return MediaType.parseMediaType("video/webm");
+        }
+        if (startsWith(head, length, 4, 'f', 't', 'y', 'p')) {
+            if (startsWith(head, length, 8, 'q', 't', ' ', ' ')) {
+                return MediaType.parseMediaType("video/quicktime");
+            }
+            return MediaType.parseMediaType("video/mp4");
+        }
+        return null;
+    }
+
+    private boolean startsWith(byte[] head, int length, int offset, int... signature) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((head[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void send(Body body, long start, long count, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (count == 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (body.buffer() != null) {
+            write(body.buffer(), start, count, Channels.newChannel(response.getOutputStream()));
+            return;
+        }
+        Path file = body.file();
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private void sendMultipart(Body body, long length, MediaType contentType, List<HttpRange> ranges,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = body.file() != null ? FileChannel.open(body.file(), StandardOpenOption.READ) : null) {
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                String partHeader = "\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n";
+                out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+                if (channel != null) {
+                    transfer(channel, start, end - start + 1, target);
+                } else {
+                    write(body.buffer(), start, end - start + 1, target);
+                }
+            }
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private void write(ByteBuffer buffer, long start, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer slice = buffer.slice(buffer.position() + (int) start, (int) count);
+        while (slice.hasRemaining()) {
+            target.write(slice);
+        }
+    }
+
+    /**
+     * A response body: a file, or a buffer when the content is not a file of its own.
+     */
+    private record Body(String fileName, Path file, ByteBuffer buffer, long length, long lastModified) {
+    }
+}
@@ -0,0 +1,381 @@
+package com.imagemanager.service;
+
+import com.imagemanager.dto.MediaMetadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Reads dimensions, format, capture time, orientation, camera and duration from a media file's
+ * headers. Pixel data is never decoded: images only go as far as the reader's header, JPEG
+ * Exif is parsed from the APP1 segment, and MP4/QuickTime files are walked box by box,
+ * skipping over {@code mdat}, to the {@code moov} box.
+ */
+@Service
+public class MetadataExtractor {
+
+    private static final DateTimeFormatter EXIF_DATE = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+    private static final LocalDateTime MP4_EPOCH = LocalDateTime.of(1904, 1, 1, 0, 0);
+
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+
+    @Autowired
+    private MediaStreamingService mediaStreamingService;
+
+    public MediaMetadata extract(Path file) throws IOException {
+        return extract(mediaStreamingService.detectContentType(file), new FileContent(file));
+    }
+
+    public MediaMetadata extract(String fileName, ByteBuffer content) throws IOException {
+        return extract(mediaStreamingService.detectContentType(fileName, content), new BufferContent(content));
+    }
+
+    private MediaMetadata extract(MediaType type, Content content) throws IOException {
+        MediaMetadata metadata = new MediaMetadata();
+        metadata.setFormat(type.getSubtype());
+
+        if ("video".equals(type.getType()) && ("mp4".equals(type.getSubtype()) || "quicktime".equals(type.getSubtype()))) {
+            try (PositionalReader reader = content.openReader()) {
+                readMovie(reader, metadata);
+            }
+        } else if ("image".equals(type.getType())) {
+            readImageHeader(content, metadata);
+            if (MediaType.IMAGE_JPEG.equals(type)) {
+                readJpegExif(content, metadata);
+            }
+        }
+
+        // Stored dimensions are as displayed, so rotated photos swap width and height
+        Integer orientation = metadata.getOrientation();
+        if (orientation != null && orientation >= 5 && orientation <= 8 && metadata.getWidth() != null) {
+            Integer width = metadata.getWidth();
+            metadata.setWidth(metadata.getHeight());
+            metadata.setHeight(width);
+        }
+        return metadata;
+    }
+
+    private void readImageHeader(Content content, MediaMetadata metadata) throws IOException {
+        try (ImageInputStream in = content.openImageStream()) {
+            if (in == null) {
+                return;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                metadata.setWidth(reader.getWidth(0));
+                metadata.setHeight(reader.getHeight(0));
+                metadata.setFormat(reader.getFormatName().toLowerCase(Locale.ROOT));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void readJpegExif(Content content, MediaMetadata metadata) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(content.openStream()))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // Stop at start of scan; Exif always comes before the image data
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                    return;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return;
+                }
+                if (marker == 0xFFE1) {
+                    byte[] segment = in.readNBytes(length);
+                    if (segment.length > 14 && new String(segment, 0, 6, StandardCharsets.US_ASCII).equals("Exif\0\0")) {
+                        readTiff(ByteBuffer.wrap(segment, 6, segment.length - 6).slice(), metadata);
+                        return;
+                    }
+                } else {
+                    in.skipNBytes(length);
+                }
+            }
+        }
+    }
+
+    private void readTiff(ByteBuffer tiff, MediaMetadata metadata) {
+        try {
+            tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            String make = null;
+            String model = null;
+            LocalDateTime dateTime = null;
+            LocalDateTime dateTimeOriginal = null;
+
+            int ifd = tiff.getInt(4);
+            int count = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                int entry = ifd + 2 + i * 12;
+                switch (tiff.getShort(entry) & 0xFFFF) {
+                    case TAG_ORIENTATION -> metadata.setOrientation(tiff.getShort(entry + 8) & 0xFFFF);
+                    case TAG_MAKE -> make = ascii(tiff, entry);
+                    case TAG_MODEL -> model = ascii(tiff, entry);
+                    case TAG_DATE_TIME -> dateTime = exifDate(ascii(tiff, entry));
+                    case TAG_EXIF_IFD -> dateTimeOriginal = readExifIfd(tiff, tiff.getInt(entry + 8));
+                    default -> { }
+                }
+            }
+
+            metadata.setTakenAt(dateTimeOriginal != null ? dateTimeOriginal : dateTime);
+            if (model != null && make != null && !model.startsWith(make)) {
+                metadata.setCamera(make + " " + model);
+            } else {
+                metadata.setCamera(model != null ? model : make);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or malformed Exif, keep whatever was read before it
+        }
+    }
+
+    private LocalDateTime readExifIfd(ByteBuffer tiff, int ifd) {
+        int count = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == TAG_DATE_TIME_ORIGINAL) {
+                return exifDate(ascii(tiff, entry));
+            }
+        }
+        return null;
+    }
+
+    private String ascii(ByteBuffer tiff, int entry) {
+        int length = tiff.getInt(entry + 4);
+        int offset = length <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+        // The count comes from the file; check it before allocating so a crafted one cannot
+        // ask for gigabytes
+        if (length < 0 || offset < 0 || (long) offset + length > tiff.limit()) {
+            throw new IndexOutOfBoundsException("Exif value of " + length + " bytes at " + offset
+                    + " is outside the " + tiff.limit() + " byte segment");
+        }
+        byte[] bytes = new byte[length];
+        tiff.get(offset, bytes);
+        String value = new String(bytes, StandardCharsets.US_ASCII).replace("\0", "").trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private LocalDateTime exifDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value, EXIF_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private void readMovie(PositionalReader channel, MediaMetadata metadata) throws IOException {
+        Box moov = findBox(channel, 0, channel.size(), "moov");
+        if (moov == null) {
+            return;
+        }
+
+        Box mvhd = findBox(channel, moov.contentStart(), moov.end(), "mvhd");
+        if (mvhd != null) {
+            ByteBuffer header = read(channel, mvhd.contentStart(), 32);
+            boolean wide = header.get(0) == 1;
+            long created = wide ? header.getLong(4) : header.getInt(4) & 0xFFFFFFFFL;
+            long timescale = header.getInt(wide ? 20 : 12) & 0xFFFFFFFFL;
+            long duration = wide ? header.getLong(24) : header.getInt(16) & 0xFFFFFFFFL;
+            if (timescale > 0) {
+                metadata.setDurationMillis(duration * 1000 / timescale);
+            }
+            if (created > 0) {
+                metadata.setTakenAt(MP4_EPOCH.plusSeconds(created));
+            }
+        }
+
+        // The first track with a size is the video track; tkhd ends with 16.16 width and height
+        long position = moov.contentStart();
+        Box box;
+        while ((box = readBox(channel, position, moov.end())) != null) {
+            if (box.type().equals("trak")) {
+                Box tkhd = findBox(channel, box.contentStart(), box.end(), "tkhd");
+                if (tkhd != null && tkhd.end() - tkhd.contentStart() >= 8) {
+                    ByteBuffer size = read(channel, tkhd.end() - 8, 8);
+                    int width = size.getInt(0) >>> 16;
+                    int height = size.getInt(4) >>> 16;
+                    if (width > 0 && height > 0) {
+                        metadata.setWidth(width);
+                        metadata.setHeight(height);
+                        return;
+                    }
+                }
+            }
+            position = box.end();
+        }
+    }
+
+    private Box findBox(PositionalReader channel, long start, long end, String type) throws IOException {
+        long position = start;
+        Box box;
+        while ((box = readBox(channel, position, end)) != null) {
+            if (box.type().equals(type)) {
+                return box;
+            }
+            position = box.end();
+        }
+        return null;
+    }
+
+    private Box readBox(PositionalReader channel, long position, long end) throws IOException {
+        if (end - position < 8) {
+            return null;
+        }
+        ByteBuffer header = read(channel, position, (int) Math.min(16, end - position));
+        long size = header.getInt(0) & 0xFFFFFFFFL;
+        String type = new String(header.array(), 4, 4, StandardCharsets.US_ASCII);
+        int headerLength = 8;
+        if (size == 1 && header.limit() >= 16) {
+            size = header.getLong(8);
+            headerLength = 16;
+        } else if (size == 0) {
+            size = end - position;
+        }
+        if (size < headerLength || position + size > end) {
+            return null;
+        }
+        return new Box(type, position + headerLength, position + size);
+    }
+
+    private ByteBuffer read(PositionalReader channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private record Box(String type, long contentStart, long end) {
+    }
+
+    /**
+     * Where the media is read from: a file, or a blob held in a buffer.
+     */
+    private interface Content {
+
+        InputStream openStream() throws IOException;
+
+        ImageInputStream openImageStream() throws IOException;
+
+        PositionalReader openReader() throws IOException;
+    }
+
+    private interface PositionalReader extends Closeable {
+
+        long size() throws IOException;
+
+        int read(ByteBuffer target, long position) throws IOException;
+    }
+
+    private record FileContent(Path file) implements Content {
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public ImageInputStream openImageStream() throws IOException {
+            return ImageIO.createImageInputStream(file.toFile());
+        }
+
+        @Override
+        public PositionalReader openReader() throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            return new PositionalReader() {
+                @Override
+                public long size() throws IOException {
+                    return channel.size();
+                }
+
+                @Override
+                public int read(ByteBuffer target, long position) throws IOException {
+                    return channel.read(target, position);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    channel.close();
+                }
+            };
+        }
+    }
+
+    private record BufferContent(ByteBuffer content) implements Content {
+
+        @Override
+        public InputStream openStream() {
+            return new ByteBufferInputStream(content);
+        }
+
+        @Override
+        public ImageInputStream openImageStream() {
+            return new MemoryCacheImageInputStream(new ByteBufferInputStream(content));
+        }
+
+        @Override
+        public PositionalReader openReader() {
+            return new PositionalReader() {
+                @Override
+                public long size() {
+                    return content.remaining();
+                }
+
+                @Override
+                public int read(ByteBuffer target, long position) {
+                    if (position >= content.remaining()) {
+                        return -1;
+                    }
+                    int count = (int) Math.min(target.remaining(), content.remaining() - position);
+                    target.put(content.slice(content.position() + (int) position, count));
+                    return count;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
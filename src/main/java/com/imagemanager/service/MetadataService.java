@@ -0,0 +1,285 @@
+package com.imagemanager.service;
+
+import com.imagemanager.dto.MediaMetadata;
+import com.imagemanager.entity.Image;
+import com.imagemanager.repository.ImageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Fills in the metadata columns, perceptual hash and placeholder of images after they are saved. New images
+ * are queued on the bounded metadata executor and retried a few times before being marked
+ * failed. Rows that were never processed, because they predate the pipeline or the queue was
+ * full, are worked through by the backfill in small batches with a pause between them.
+ * Results are written through the entity, so only that image's cache entry changes, and the
+ * dashboard grids are invalidated at most once per {@code metadata.grid-invalidation-delay-ms}
+ * however many images finish in that time.
+ */
+@Service
+public class MetadataService {
+
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Autowired
+    private MetadataExtractor metadataExtractor;
+
+    @Autowired
+    private PerceptualHashService perceptualHashService;
+
+    @Autowired
+    private PlaceholderService placeholderService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("metadataExecutor")
+    private ThreadPoolTaskExecutor metadataExecutor;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private PackStoreService packStoreService;
+
+    @Autowired
+    private DashboardGridCache dashboardGridCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${metadata.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${metadata.retry-delay-ms:1000}")
+    private long retryDelayMillis;
+
+    @Value("${metadata.backfill.batch-size:100}")
+    private int backfillBatchSize;
+
+    @Value("${metadata.backfill.pause-ms:500}")
+    private long backfillPauseMillis;
+
+    @Value("${metadata.backfill.on-startup:true}")
+    private boolean backfillOnStartup;
+
+    @Value("${metadata.grid-invalidation-delay-ms:1000}")
+    private long gridInvalidationDelayMillis;
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean(false);
+    private final AtomicBoolean gridsStale = new AtomicBoolean(false);
+    private ScheduledExecutorService gridInvalidator;
+
+    @PostConstruct
+    public void init() {
+        gridInvalidator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metadata-grid-invalidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        gridInvalidator.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            startBackfill();
+        }
+    }
+
+    public void enqueue(Image image) {
+        Long id = image.getId();
+        String fileName = image.getFileName();
+        Long knownHash = image.getPerceptualHash();
+        boolean hasPlaceholder = image.getDominantColor() != null;
+        try {
+            metadataExecutor.execute(() -> extract(id, fileName, knownHash, hasPlaceholder));
+        } catch (TaskRejectedException e) {
+            meterRegistry.counter("imagemanager.metadata.rejected").increment();
+            System.err.println("Metadata queue full, leaving " + fileName + " for the backfill");
+        }
+    }
+
+    public void enqueueAll(Collection<Image> images) {
+        images.forEach(this::enqueue);
+    }
+
+    /**
+     * Starts the backfill on a background thread. Returns false if one is already running.
+     */
+    public boolean startBackfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                int processed = backfill();
+                if (processed > 0) {
+                    System.out.println("Metadata backfill processed " + processed + " images");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Metadata backfill stopped: " + e.getMessage());
+            } finally {
+                backfillRunning.set(false);
+            }
+        }, "metadata-backfill");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private int backfill() {
+        int processed = 0;
+        long afterId = 0;
+        while (true) {
+            List<Object[]> batch = imageRepository.findPendingMetadataAfter(afterId, PageRequest.of(0, backfillBatchSize));
+            if (batch.isEmpty()) {
+                return processed;
+            }
+            for (Object[] row : batch) {
+                afterId = (Long) row[0];
+                extract(afterId, (String) row[1], (Long) row[2], row[3] != null);
+                processed++;
+            }
+            try {
+                Thread.sleep(backfillPauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return processed;
+            }
+        }
+    }
+
+    private void extract(Long imageId, String fileName, Long knownHash, boolean hasPlaceholder) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                ByteBuffer packed = packStoreService.read(fileName);
+                MediaMetadata metadata = packed != null
+                        ? metadataExtractor.extract(fileName, packed)
+                        : metadataExtractor.extract(storageLayout.resolve(fileName));
+                Long hash = knownHash;
+                PlaceholderService.Placeholder placeholder = null;
+                if ((hash == null || !hasPlaceholder) && metadata.getWidth() != null
+                        && metadata.getDurationMillis() == null) {
+                    BufferedImage preview = decodePreview(fileName);
+                    if (preview != null) {
+                        if (hash == null) {
+                            hash = PerceptualHashService.hash(preview);
+                        }
+                        if (!hasPlaceholder) {
+                            placeholder = placeholder(fileName, preview);
+                        }
+                    }
+                }
+                Long perceptualHash = hash;
+                PlaceholderService.Placeholder preview = placeholder;
+                update(imageId, image -> {
+                    image.setWidth(metadata.getWidth());
+                    image.setHeight(metadata.getHeight());
+                    image.setMediaFormat(metadata.getFormat());
+                    image.setTakenAt(metadata.getTakenAt());
+                    image.setOrientation(metadata.getOrientation());
+                    image.setCamera(metadata.getCamera());
+                    image.setDurationMillis(metadata.getDurationMillis());
+                    image.setPerceptualHash(perceptualHash);
+                    if (preview != null && image.getDominantColor() == null) {
+                        image.setPlaceholder(preview.dataUri());
+                        image.setDominantColor(preview.dominantColor());
+                    }
+                    image.setMetadataStatus(STATUS_DONE);
+                });
+                perceptualHashService.index(imageId, hash);
+                // Cards show the dimensions and placeholder
+                scheduleGridInvalidation();
+                meterRegistry.counter("imagemanager.metadata", "status", STATUS_DONE).increment();
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    System.err.println("Could not read metadata of " + fileName + ": " + e.getMessage());
+                    update(imageId, image -> image.setMetadataStatus(STATUS_FAILED));
+                    meterRegistry.counter("imagemanager.metadata", "status", STATUS_FAILED).increment();
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(retryDelayMillis * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // An image deleted in the meantime is skipped
+    private void update(Long imageId, Consumer<Image> changes) {
+        transactionTemplate.executeWithoutResult(status -> imageRepository.findById(imageId).ifPresent(changes));
+    }
+
+    private void scheduleGridInvalidation() {
+        if (gridsStale.compareAndSet(false, true)) {
+            gridInvalidator.schedule(() -> {
+                gridsStale.set(false);
+                dashboardGridCache.invalidate();
+            }, gridInvalidationDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The preview feeds both the hash and the placeholder. A failure does not fail the
+     * metadata; the row is retried by the next backfill.
+     */
+    private BufferedImage decodePreview(String fileName) {
+        try {
+            return thumbnailService.decodePreview(fileName);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not decode a preview of " + fileName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private PlaceholderService.Placeholder placeholder(String fileName, BufferedImage preview) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return placeholderService.create(preview);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not build a placeholder for " + fileName + ": " + e.getMessage());
+            return null;
+        } finally {
+            sample.stop(meterRegistry.timer("imagemanager.placeholder"));
+        }
+    }
+}
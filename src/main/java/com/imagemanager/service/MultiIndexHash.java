@@ -0,0 +1,160 @@
+package com.imagemanager.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Multi-index hashing over 64-bit hashes for Hamming radius queries. Each hash is split into
+ * four 16-bit chunks and filed under every chunk value in its own table. Two hashes within
+ * {@code r} bits of each other must agree to within {@code r / 4} bits on at least one chunk,
+ * so a query only verifies the entries filed under chunk values that close to its own, instead
+ * of every stored hash. Removed entries leave an unused slot until the index is rebuilt.
+ * Not thread-safe.
+ */
+public class MultiIndexHash {
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private long[] hashes = new long[1024];
+    private long[] ids = new long[1024];
+    private boolean[] removed = new boolean[1024];
+    private int slots;
+    private int size;
+
+    private final int[][][] buckets = new int[CHUNKS][1 << CHUNK_BITS][];
+    private final int[][] bucketSizes = new int[CHUNKS][1 << CHUNK_BITS];
+
+    public record Match(long id, int distance) {
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an id under a hash. Adding the same pair twice keeps one entry.
+     */
+    public void add(long hash, long id) {
+        if (find(hash, id) >= 0) {
+            return;
+        }
+        if (slots == hashes.length) {
+            hashes = Arrays.copyOf(hashes, slots * 2);
+            ids = Arrays.copyOf(ids, slots * 2);
+            removed = Arrays.copyOf(removed, slots * 2);
+        }
+        int slot = slots++;
+        hashes[slot] = hash;
+        ids[slot] = id;
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int key = chunk(hash, chunk);
+            int[] bucket = buckets[chunk][key];
+            int count = bucketSizes[chunk][key];
+            if (bucket == null) {
+                bucket = new int[2];
+            } else if (count == bucket.length) {
+                bucket = Arrays.copyOf(bucket, count * 2);
+            }
+            bucket[count] = slot;
+            buckets[chunk][key] = bucket;
+            bucketSizes[chunk][key] = count + 1;
+        }
+        size++;
+    }
+
+    public boolean remove(long hash, long id) {
+        int slot = find(hash, id);
+        if (slot < 0) {
+            return false;
+        }
+        removed[slot] = true;
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int key = chunk(hash, chunk);
+            int[] bucket = buckets[chunk][key];
+            int count = bucketSizes[chunk][key];
+            for (int i = 0; i < count; i++) {
+                if (bucket[i] == slot) {
+                    bucket[i] = bucket[count - 1];
+                    bucketSizes[chunk][key] = count - 1;
+                    break;
+                }
+            }
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns every id whose hash is within {@code radius} bits of {@code hash}, closest first.
+     */
+    public List<Match> search(long hash, int radius) {
+        List<Match> matches = new ArrayList<>();
+        int chunkRadius = radius / CHUNKS;
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            probe(hash, radius, chunkRadius, chunk, chunk(hash, chunk), 0, chunkRadius, matches);
+        }
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparingLong(Match::id));
+        return matches;
+    }
+
+    /**
+     * Visits every chunk value within {@code remaining} more bit flips of {@code key}, flipping
+     * only bits from {@code fromBit} upwards so each value is visited once.
+     */
+    private void probe(long hash, int radius, int chunkRadius, int chunk, int key, int fromBit, int remaining,
+                       List<Match> matches) {
+        collect(hash, radius, chunkRadius, chunk, key, matches);
+        if (remaining == 0) {
+            return;
+        }
+        for (int bit = fromBit; bit < CHUNK_BITS; bit++) {
+            probe(hash, radius, chunkRadius, chunk, key ^ (1 << bit), bit + 1, remaining - 1, matches);
+        }
+    }
+
+    private void collect(long hash, int radius, int chunkRadius, int chunk, int key, List<Match> matches) {
+        int[] bucket = buckets[chunk][key];
+        int count = bucketSizes[chunk][key];
+        for (int i = 0; i < count; i++) {
+            long candidate = hashes[bucket[i]];
+            int distance = Long.bitCount(candidate ^ hash);
+            if (distance <= radius && firstMatchingChunk(candidate, hash, chunkRadius) == chunk) {
+                matches.add(new Match(ids[bucket[i]], distance));
+            }
+        }
+    }
+
+    /**
+     * The candidate is reported only from the first chunk that finds it, so each match is
+     * returned once however many chunks it agrees on.
+     */
+    private int firstMatchingChunk(long candidate, long hash, int chunkRadius) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            if (Integer.bitCount(chunk(candidate, chunk) ^ chunk(hash, chunk)) <= chunkRadius) {
+                return chunk;
+            }
+        }
+        return -1;
+    }
+
+    private int find(long hash, long id) {
+        int key = chunk(hash, 0);
+        int[] bucket = buckets[0][key];
+        int count = bucketSizes[0][key];
+        for (int i = 0; i < count; i++) {
+            int slot = bucket[i];
+            if (!removed[slot] && hashes[slot] == hash && ids[slot] == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static int chunk(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & CHUNK_MASK;
+    }
+}
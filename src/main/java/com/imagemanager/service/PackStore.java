@@ -0,0 +1,527 @@
+package com.imagemanager.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store for small blobs. Blobs are appended as records to segment files of up to
+ * {@code maxSegmentBytes}, and an in-memory index maps each key to its segment, offset and
+ * length. Reads are slices of a read-only memory mapping of the segment, so a lookup is a map
+ * access and never opens a file.
+ * <p>
+ * Each record is a header (magic, type, key length, data length, CRC-32 of key and data)
+ * followed by the key and the data. Deleting appends a tombstone record. The index is not
+ * persisted: {@link #open()} replays the record headers of every segment in order, and
+ * truncates a torn or corrupt tail off the last segment, which is the only one written to.
+ * <p>
+ * {@link #compact(double)} copies the live records of sealed segments that are mostly garbage
+ * into the active segment and deletes them. Appends, deletes and compaction copies take one
+ * lock so replay order always matches index order; reads take no lock.
+ * <p>
+ * A put returns only once its record is forced to disk, so a caller may commit a reference to
+ * it. The force happens outside the append lock and covers everything appended so far, so
+ * concurrent puts share one. Compaction forces its copies before the old segments are deleted.
+ * Deletes are not forced: a lost tombstone only brings back a blob nothing references.
+ */
+public class PackStore implements Closeable {
+
+    private static final int SEGMENT_MAGIC = 0x504B5347; // "PKSG"
+    private static final int RECORD_MAGIC = 0x504B5243; // "PKRC"
+    private static final int SEGMENT_HEADER = 8;
+    private static final int RECORD_HEADER = 15;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".pack";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final List<Path> retired = new ArrayList<>();
+    private final Object appendLock = new Object();
+    private volatile Segment active;
+
+    public record Location(int segment, long offset, int length) {
+    }
+
+    public record Stats(int segments, int blobs, long liveBytes, long garbageBytes) {
+    }
+
+    public PackStore(Path directory, long maxSegmentBytes) {
+        if (maxSegmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segments are mapped whole and must stay under 2 GB");
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Opens every segment and rebuilds the index from their record headers. Only the last
+     * segment has its checksums verified, since it is the only one a crash can leave half written.
+     */
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) listing::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        ids.sort(null);
+
+        synchronized (appendLock) {
+            for (int i = 0; i < ids.size(); i++) {
+                Segment segment = openSegment(ids.get(i));
+                segments.put(segment.id, segment);
+                replay(segment, i == ids.size() - 1);
+            }
+            active = segments.isEmpty() ? createSegment(1) : segments.lastEntry().getValue();
+        }
+    }
+
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Returns a read-only view of the blob, or null if the key is not stored. The buffer stays
+     * valid after the blob is deleted or compacted away.
+     */
+    public ByteBuffer get(String key) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            Segment segment = segments.get(location.segment());
+            try {
+                if (segment != null) {
+                    return segment.slice(location.offset(), location.length());
+                }
+            } catch (ClosedChannelException e) {
+                if (attempt > 0) {
+                    throw e;
+                }
+            }
+            // Compacted since the index lookup; the index already points at the new copy
+        }
+        throw new IOException("Pack segment for " + key + " is gone");
+    }
+
+    /**
+     * Appends the file's content under the key, replacing any earlier blob stored under it.
+     */
+    public Location put(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        if (size > maxSegmentBytes - SEGMENT_HEADER - RECORD_HEADER - keyBytes(key).length) {
+            throw new IllegalArgumentException("Blob of " + size + " bytes does not fit in a segment");
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // keep reading
+            }
+        }
+        data.flip();
+        return put(key, data);
+    }
+
+    public Location put(String key, ByteBuffer data) throws IOException {
+        Location location;
+        synchronized (appendLock) {
+            location = append(PUT, key, data);
+            Location previous = index.put(key, location);
+            if (previous != null) {
+                markGarbage(previous.segment(), recordLength(key, previous.length()));
+            }
+        }
+        Segment segment = segments.get(location.segment());
+        try {
+            if (segment != null) {
+                segment.force(location.offset() + location.length());
+                return location;
+            }
+        } catch (ClosedChannelException e) {
+            // Compacted since the append
+        }
+        // The record was copied to another segment; force wherever it went
+        forceAll();
+        return location;
+    }
+
+    /**
+     * Returns true if the key was stored.
+     */
+    public boolean delete(String key) throws IOException {
+        synchronized (appendLock) {
+            Location previous = index.remove(key);
+            if (previous == null) {
+                return false;
+            }
+            Location tombstone = append(DELETE, key, ByteBuffer.allocate(0));
+            markGarbage(previous.segment(), recordLength(key, previous.length()));
+            markGarbage(tombstone.segment(), recordLength(key, 0));
+            return true;
+        }
+    }
+
+    /**
+     * Rewrites every sealed segment whose share of garbage is at least {@code minGarbageRatio}.
+     * Returns the number of bytes reclaimed.
+     */
+    public long compact(double minGarbageRatio) throws IOException {
+        long reclaimed = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || segment.garbageRatio() < minGarbageRatio) {
+                continue;
+            }
+            long before = segment.size();
+            long copied = copyLive(segment);
+            synchronized (appendLock) {
+                segments.remove(segment.id);
+                segment.close();
+                retired.add(segment.file);
+            }
+            reclaimed += before - copied;
+        }
+        // The copies must be on disk before the only other copy is deleted
+        forceAll();
+        deleteRetired();
+        return reclaimed;
+    }
+
+    public boolean needsCompaction(double minGarbageRatio) {
+        Segment current = active;
+        return segments.values().stream()
+                .anyMatch(segment -> segment != current && segment.garbageRatio() >= minGarbageRatio);
+    }
+
+    public Stats stats() {
+        long live = 0;
+        long garbage = 0;
+        for (Segment segment : segments.values()) {
+            garbage += segment.garbage.get();
+            live += segment.size() - SEGMENT_HEADER - segment.garbage.get();
+        }
+        return new Stats(segments.size(), index.size(), live, garbage);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            index.clear();
+        }
+    }
+
+    /**
+     * Copies the records of a segment that are still current. Puts are copied when the index
+     * still points at them; tombstones are copied while an older segment could still hold the
+     * blob they delete, otherwise replay would bring it back.
+     */
+    private long copyLive(Segment segment) throws IOException {
+        long copied = 0;
+        long position = SEGMENT_HEADER;
+        long end = segment.size();
+        while (position < end) {
+            RecordHeader header = segment.readHeader(position, end);
+            if (header == null) {
+                break;
+            }
+            synchronized (appendLock) {
+                if (header.type == PUT) {
+                    Location current = index.get(header.key);
+                    if (current != null && current.segment() == segment.id && current.offset() == header.dataOffset) {
+                        ByteBuffer data = segment.slice(header.dataOffset, header.length);
+                        index.put(header.key, append(PUT, header.key, data));
+                        copied += header.recordLength();
+                    }
+                } else if (!index.containsKey(header.key) && segments.firstKey() < segment.id) {
+                    Location tombstone = append(DELETE, header.key, ByteBuffer.allocate(0));
+                    markGarbage(tombstone.segment(), header.recordLength());
+                    copied += header.recordLength();
+                }
+            }
+            position = header.dataOffset + header.length;
+        }
+        return copied;
+    }
+
+    private Location append(byte type, String key, ByteBuffer data) throws IOException {
+        byte[] keyBytes = keyBytes(key);
+        int length = data.remaining();
+        long recordLength = (long) RECORD_HEADER + keyBytes.length + length;
+        if (active.size() + recordLength > maxSegmentBytes) {
+            active = createSegment(active.id + 1);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(data.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER + keyBytes.length);
+        header.putInt(RECORD_MAGIC).put(type).putShort((short) keyBytes.length).putInt(length)
+                .putInt((int) crc.getValue()).put(keyBytes).flip();
+
+        long offset = active.size();
+        active.write(new ByteBuffer[] { header, data.duplicate() }, offset, recordLength);
+        return new Location(active.id, offset + RECORD_HEADER + keyBytes.length, length);
+    }
+
+    private void replay(Segment segment, boolean verify) throws IOException {
+        long position = SEGMENT_HEADER;
+        long end = segment.size();
+        while (position < end) {
+            RecordHeader header = segment.readHeader(position, end);
+            if (header == null || (verify && !segment.checksumMatches(header))) {
+                System.err.println("Pack segment " + segment.file.getFileName() + " ends in a torn record at "
+                        + position + ", truncating " + (end - position) + " bytes");
+                segment.truncate(position);
+                break;
+            }
+            Location previous = header.type == PUT
+                    ? index.put(header.key, new Location(segment.id, header.dataOffset, header.length))
+                    : index.remove(header.key);
+            if (previous != null) {
+                markGarbage(previous.segment(), recordLength(header.key, previous.length()));
+            }
+            if (header.type == DELETE) {
+                segment.garbage.addAndGet(header.recordLength());
+            }
+            position = header.dataOffset + header.length;
+        }
+    }
+
+    private void forceAll() throws IOException {
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            try {
+                segment.force(segment.size());
+            } catch (ClosedChannelException e) {
+                // Retired by a concurrent compaction, which forced its copies first
+            }
+        }
+    }
+
+    private void markGarbage(int segmentId, long bytes) {
+        Segment segment = segments.get(segmentId);
+        if (segment != null) {
+            segment.garbage.addAndGet(bytes);
+        }
+    }
+
+    private void deleteRetired() {
+        synchronized (appendLock) {
+            // Windows refuses to delete a file that is still mapped; retry on the next pass
+            retired.removeIf(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                    return true;
+                } catch (IOException e) {
+                    return false;
+                }
+            });
+        }
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path file = directory.resolve(segmentName(id));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+        channel.read(header, 0);
+        if (header.getInt(0) != SEGMENT_MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a pack segment");
+        }
+        return new Segment(id, file, channel);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path file = directory.resolve(segmentName(id));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.write(ByteBuffer.allocate(SEGMENT_HEADER).putInt(SEGMENT_MAGIC).putInt(1).flip(), 0);
+        channel.force(true);
+        forceDirectory();
+        Segment segment = new Segment(id, file, channel);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Makes a new segment's directory entry durable. Not every platform can open a directory,
+     * Windows for one, and there it is skipped.
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+
+    private static String segmentName(int id) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    private static byte[] keyBytes(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Key too long: " + key);
+        }
+        return bytes;
+    }
+
+    private static long recordLength(String key, int length) {
+        return (long) RECORD_HEADER + keyBytes(key).length + length;
+    }
+
+    private record RecordHeader(byte type, String key, long dataOffset, int length, int crc) {
+
+        long recordLength() {
+            return PackStore.recordLength(key, length);
+        }
+    }
+
+    private static final class Segment {
+
+        private final int id;
+        private final Path file;
+        private final FileChannel channel;
+        private final AtomicLong size;
+        private final AtomicLong garbage = new AtomicLong();
+        private final Object forceLock = new Object();
+        private volatile MappedByteBuffer mapped;
+        // Everything before this offset is known to be on disk
+        private volatile long forced;
+
+        Segment(int id, Path file, FileChannel channel) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = new AtomicLong(channel.size());
+            this.forced = size.get();
+        }
+
+        long size() {
+            return size.get();
+        }
+
+        double garbageRatio() {
+            long payload = size() - SEGMENT_HEADER;
+            return payload <= 0 ? 0 : (double) garbage.get() / payload;
+        }
+
+        void write(ByteBuffer[] buffers, long offset, long length) throws IOException {
+            long position = offset;
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+            size.set(offset + length);
+        }
+
+        /**
+         * Forces the segment unless a force since {@code end} was written already covered it.
+         */
+        void force(long end) throws IOException {
+            if (forced >= end) {
+                return;
+            }
+            synchronized (forceLock) {
+                if (forced >= end) {
+                    return;
+                }
+                long written = size();
+                channel.force(false);
+                forced = written;
+            }
+        }
+
+        /**
+         * The mapping only covers the file as it was when mapped, so the active segment is
+         * mapped again once a read reaches past it.
+         */
+        ByteBuffer slice(long offset, int length) throws IOException {
+            MappedByteBuffer current = mapped;
+            if (current == null || offset + length > current.capacity()) {
+                synchronized (this) {
+                    current = mapped;
+                    if (current == null || offset + length > current.capacity()) {
+                        current = channel.map(FileChannel.MapMode.READ_ONLY, 0, size());
+                        mapped = current;
+                    }
+                }
+            }
+            return current.slice((int) offset, length).asReadOnlyBuffer();
+        }
+
+        RecordHeader readHeader(long position, long end) throws IOException {
+            if (end - position < RECORD_HEADER) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            channel.read(header, position);
+            header.flip();
+            if (header.remaining() < RECORD_HEADER || header.getInt() != RECORD_MAGIC) {
+                return null;
+            }
+            byte type = header.get();
+            int keyLength = header.getShort();
+            int length = header.getInt();
+            int crc = header.getInt();
+            long dataOffset = position + RECORD_HEADER + keyLength;
+            if ((type != PUT && type != DELETE) || keyLength <= 0 || length < 0 || dataOffset + length > end) {
+                return null;
+            }
+            ByteBuffer key = ByteBuffer.allocate(keyLength);
+            channel.read(key, position + RECORD_HEADER);
+            return new RecordHeader(type, new String(key.array(), StandardCharsets.UTF_8), dataOffset, length, crc);
+        }
+
+        boolean checksumMatches(RecordHeader header) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(header.key.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer data = ByteBuffer.allocate(header.length);
+            channel.read(data, header.dataOffset);
+            crc.update(data.flip());
+            return (int) crc.getValue() == header.crc;
+        }
+
+        void truncate(long length) throws IOException {
+            channel.truncate(length);
+            size.set(length);
+            forced = Math.min(forced, length);
+            mapped = null;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
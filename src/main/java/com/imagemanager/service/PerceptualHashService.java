@@ -0,0 +1,139 @@
+package com.imagemanager.service;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.repository.ImageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Computes a 64-bit difference hash (dHash) per image and keeps all of them in a multi-index
+ * hash table, so images that are the same picture after resizing or recompression can be found
+ * by Hamming distance. The hash is taken over a 9x8 grid of mean luminance and sets one bit for
+ * every cell brighter than its right neighbour. The index is rebuilt from the database at startup.
+ */
+@Service
+public class PerceptualHashService {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    private static final int REBUILD_BATCH_SIZE = 5000;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Value("${duplicates.max-radius:10}")
+    private int maxRadius;
+
+    private final MultiIndexHash index = new MultiIndexHash();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        int loaded = 0;
+        List<Object[]> batch;
+        do {
+            batch = imageRepository.findPerceptualHashesAfter(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            lock.writeLock().lock();
+            try {
+                for (Object[] row : batch) {
+                    afterId = (Long) row[0];
+                    index.add((Long) row[1], afterId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loaded += batch.size();
+        } while (batch.size() == REBUILD_BATCH_SIZE);
+        System.out.println("Perceptual hash index loaded " + loaded + " hashes in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Hashes the image stored under the file name, or returns null if it cannot be decoded.
+     */
+    public Long compute(String fileName) throws IOException {
+        BufferedImage preview = thumbnailService.decodePreview(fileName);
+        return preview == null ? null : hash(preview);
+    }
+
+    public static long hash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+
+        double[] sums = new double[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+        for (int y = 0; y < height; y++) {
+            int row = Math.min(GRID_HEIGHT - 1, y * GRID_HEIGHT / height);
+            for (int x = 0; x < width; x++) {
+                int cell = row * GRID_WIDTH + Math.min(GRID_WIDTH - 1, x * GRID_WIDTH / width);
+                int pixel = rgb[y * width + x];
+                sums[cell] += 0.299 * ((pixel >> 16) & 0xFF) + 0.587 * ((pixel >> 8) & 0xFF) + 0.114 * (pixel & 0xFF);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < GRID_HEIGHT; row++) {
+            for (int column = 0; column < GRID_WIDTH - 1; column++) {
+                int cell = row * GRID_WIDTH + column;
+                double left = counts[cell] == 0 ? 0 : sums[cell] / counts[cell];
+                double right = counts[cell + 1] == 0 ? 0 : sums[cell + 1] / counts[cell + 1];
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    public void index(Long imageId, Long hash) {
+        if (imageId == null || hash == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.add(hash, imageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Image image) {
+        if (image.getId() == null || image.getPerceptualHash() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.remove(image.getPerceptualHash(), image.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the images whose hash is within {@code radius} bits, capped at the configured
+     * maximum, closest first.
+     */
+    public List<MultiIndexHash.Match> findNearDuplicates(long hash, int radius) {
+        lock.readLock().lock();
+        try {
+            return index.search(hash, Math.min(radius, maxRadius));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.imagemanager.service;
+
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Builds the low-quality placeholder a gallery card shows until its image loads: a JPEG of
+ * at most {@value #PLACEHOLDER_SIZE} pixels on the longest edge as a {@code data:} URI, small
+ * enough to inline in the page, and the dominant colour for the card background. Both are
+ * taken from the decoded preview, so no extra decode is needed.
+ */
+@Service
+public class PlaceholderService {
+
+    public static final int MAX_DATA_URI_LENGTH = 2048;
+
+    private static final int PLACEHOLDER_SIZE = 20;
+    private static final float JPEG_QUALITY = 0.5f;
+    private static final String DATA_URI_PREFIX = "data:image/jpeg;base64,";
+
+    public record Placeholder(String dataUri, String dominantColor) {
+    }
+
+    public Placeholder create(BufferedImage preview) throws IOException {
+        BufferedImage tiny = downscale(preview, PLACEHOLDER_SIZE);
+        String dataUri = DATA_URI_PREFIX + Base64.getEncoder().encodeToString(encodeJpeg(tiny));
+        return new Placeholder(dataUri.length() <= MAX_DATA_URI_LENGTH ? dataUri : null, dominantColor(preview));
+    }
+
+    /**
+     * Box-filters the image down so each output pixel is the mean of the pixels it covers,
+     * which keeps the colours of the original where plain subsampling would pick noise.
+     */
+    static BufferedImage downscale(BufferedImage source, int maxSize) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        double ratio = Math.min(1.0, (double) maxSize / Math.max(sourceWidth, sourceHeight));
+        int width = Math.max(1, (int) Math.round(sourceWidth * ratio));
+        int height = Math.max(1, (int) Math.round(sourceHeight * ratio));
+
+        int[] rgb = source.getRGB(0, 0, sourceWidth, sourceHeight, null, 0, sourceWidth);
+        long[] red = new long[width * height];
+        long[] green = new long[width * height];
+        long[] blue = new long[width * height];
+        int[] counts = new int[width * height];
+        for (int y = 0; y < sourceHeight; y++) {
+            int row = Math.min(height - 1, y * height / sourceHeight) * width;
+            for (int x = 0; x < sourceWidth; x++) {
+                int cell = row + Math.min(width - 1, x * width / sourceWidth);
+                int pixel = rgb[y * sourceWidth + x];
+                red[cell] += (pixel >> 16) & 0xFF;
+                green[cell] += (pixel >> 8) & 0xFF;
+                blue[cell] += pixel & 0xFF;
+                counts[cell]++;
+            }
+        }
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int cell = 0; cell < counts.length; cell++) {
+            int count = Math.max(1, counts[cell]);
+            scaled.setRGB(cell % width, cell / width,
+                    (int) (red[cell] / count) << 16 | (int) (green[cell] / count) << 8 | (int) (blue[cell] / count));
+        }
+        return scaled;
+    }
+
+    /**
+     * The mean colour of the most populated bucket when colours are quantised to 4 bits per
+     * channel, so a photo of a red car on grey tarmac gets grey rather than a muddy average.
+     */
+    static String dominantColor(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+        int[] counts = new int[4096];
+        long[][] sums = new long[4096][3];
+        for (int pixel : rgb) {
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            int bucket = (r >> 4) << 8 | (g >> 4) << 4 | (b >> 4);
+            counts[bucket]++;
+            sums[bucket][0] += r;
+            sums[bucket][1] += g;
+            sums[bucket][2] += b;
+        }
+        int best = 0;
+        for (int bucket = 1; bucket < counts.length; bucket++) {
+            if (counts[bucket] > counts[best]) {
+                best = bucket;
+            }
+        }
+        int count = Math.max(1, counts[best]);
+        return String.format("#%02x%02x%02x", sums[best][0] / count, sums[best][1] / count, sums[best][2] / count);
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
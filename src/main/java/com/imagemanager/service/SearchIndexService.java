@@ -0,0 +1,311 @@
+package com.imagemanager.service;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.Tag;
+import com.imagemanager.repository.ImageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory trigram index over image title, description, original file name, tags and uploader.
+ * Substring queries are answered by intersecting the posting lists of the query's trigrams and
+ * verifying the surviving candidates, so results match the old {@code LIKE '%q%'} semantics
+ * without scanning the table. Kept current by the write paths and rebuilt at startup.
+ * Posting lists are {@link CompressedBitmap}s of image ids, documents keep only the normalised
+ * text needed to verify and rank a match, and a document's trigrams are recomputed from that
+ * text when it is replaced, which keeps the index at a few hundred bytes per image.
+ */
+@Service
+public class SearchIndexService {
+
+    private static final int GRAM = 3;
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private static final int TITLE_WEIGHT = 5;
+    private static final int TAG_WEIGHT = 4;
+    private static final int FILE_NAME_WEIGHT = 2;
+    private static final int UPLOADER_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final Comparator<ScoredDocument> RANKING = Comparator
+            .comparingInt(ScoredDocument::score).reversed()
+            .thenComparing(Comparator.comparingLong((ScoredDocument scored) -> scored.document().uploadDate()).reversed())
+            .thenComparing(Comparator.comparingLong((ScoredDocument scored) -> scored.document().id()).reversed());
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Value("${search.index.enabled:true}")
+    private boolean enabled;
+
+    private final Map<Long, IndexedDocument> documents = new HashMap<>();
+    private final Map<String, CompressedBitmap> postings = new HashMap<>();
+    // Uploader and tag names repeat across images, so each document points at one shared copy
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Reloads every image from the database in id batches and swaps in a fresh index.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        ready = false;
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            names.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        int page = 0;
+        Slice<Long> ids;
+        do {
+            ids = imageRepository.findAllIds(PageRequest.of(page++, REBUILD_BATCH_SIZE));
+            if (!ids.isEmpty()) {
+                for (Image image : imageRepository.findWithTagsAndUserByIdIn(ids.getContent())) {
+                    index(image);
+                }
+            }
+        } while (ids.hasNext());
+
+        ready = true;
+        System.out.println("Search index rebuilt: " + size() + " images, " + postings.size()
+                + " trigrams in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Adds or replaces the entry for an image. Tags and uploader must be initialised.
+     */
+    public void index(Image image) {
+        if (!enabled || image.getId() == null) {
+            return;
+        }
+        if (image.getId() > Integer.MAX_VALUE) {
+            System.err.println("Image id " + image.getId() + " does not fit the search index");
+            return;
+        }
+        IndexedDocument document = toDocument(image);
+
+        lock.writeLock().lock();
+        try {
+            IndexedDocument previous = documents.put(document.id(), document);
+            if (previous != null) {
+                unlinkPostings(previous);
+            }
+            for (String gram : trigrams(document)) {
+                postings.computeIfAbsent(gram, g -> new CompressedBitmap()).add((int) document.id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long imageId) {
+        if (!enabled || imageId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            IndexedDocument previous = documents.remove(imageId);
+            if (previous != null) {
+                unlinkPostings(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Page<Long> search(String query, Pageable pageable) {
+        return search(query, null, pageable);
+    }
+
+    /**
+     * Returns the ids of matching images, best match first and newest first among equals,
+     * optionally restricted to one uploader.
+     */
+    public Page<Long> search(String query, Long userId, Pageable pageable) {
+        String needle = normalize(query);
+
+        List<ScoredDocument> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (IndexedDocument document : candidates(needle)) {
+                if (userId != null && userId != document.userId()) {
+                    continue;
+                }
+                int score = score(document, needle);
+                if (score > 0) {
+                    matches.add(new ScoredDocument(document, score));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(RANKING);
+        int from = (int) Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        List<Long> pageIds = matches.subList(from, to).stream()
+                .map(scored -> scored.document().id())
+                .collect(Collectors.toList());
+        return new PageImpl<>(pageIds, pageable, matches.size());
+    }
+
+    private Collection<IndexedDocument> candidates(String needle) {
+        if (needle.length() < GRAM) {
+            return documents.values();
+        }
+
+        List<CompressedBitmap> lists = new ArrayList<>();
+        for (String gram : trigrams(needle)) {
+            CompressedBitmap posting = postings.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(CompressedBitmap::cardinality));
+
+        CompressedBitmap matches = lists.get(0);
+        for (int i = 1; i < lists.size() && !matches.isEmpty(); i++) {
+            matches = matches.and(lists.get(i));
+        }
+        int[] ids = matches.descending(0, matches.cardinality());
+        List<IndexedDocument> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(documents.get((long) id));
+        }
+        return result;
+    }
+
+    private int score(IndexedDocument document, String needle) {
+        int score = fieldScore(document.title(), needle, TITLE_WEIGHT)
+                + fieldScore(document.originalFileName(), needle, FILE_NAME_WEIGHT)
+                + fieldScore(document.username(), needle, UPLOADER_WEIGHT)
+                + fieldScore(document.description(), needle, DESCRIPTION_WEIGHT);
+        for (String tag : document.tags()) {
+            score += fieldScore(tag, needle, TAG_WEIGHT);
+        }
+        return score;
+    }
+
+    private int fieldScore(String value, String needle, int weight) {
+        if (value.isEmpty()) {
+            return 0;
+        }
+        int at = value.indexOf(needle);
+        if (at < 0) {
+            return 0;
+        }
+        if (value.equals(needle)) {
+            return weight * 4;
+        }
+        boolean wordStart = at == 0 || !Character.isLetterOrDigit(value.charAt(at - 1));
+        return wordStart ? weight * 2 : weight;
+    }
+
+    private void unlinkPostings(IndexedDocument document) {
+        for (String gram : trigrams(document)) {
+            CompressedBitmap posting = postings.get(gram);
+            if (posting != null) {
+                posting.remove((int) document.id());
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private IndexedDocument toDocument(Image image) {
+        List<String> tags = image.getTags() == null ? List.of()
+                : image.getTags().stream().map(Tag::getName).map(this::normalize).map(this::shared)
+                        .collect(Collectors.toUnmodifiableList());
+        String username = image.getUser() != null ? shared(normalize(image.getUser().getUsername())) : "";
+        long userId = image.getUser() != null && image.getUser().getId() != null ? image.getUser().getId() : 0;
+        LocalDateTime uploadDate = image.getUploadDate();
+
+        return new IndexedDocument(image.getId(), userId,
+                uploadDate != null ? uploadDate.toInstant(ZoneOffset.UTC).toEpochMilli() : Long.MIN_VALUE,
+                normalize(image.getTitle()), normalize(image.getDescription()),
+                normalize(image.getOriginalFileName()), username, tags);
+    }
+
+    private String shared(String name) {
+        return names.computeIfAbsent(name, n -> n);
+    }
+
+    private Set<String> trigrams(IndexedDocument document) {
+        Set<String> grams = new HashSet<>();
+        addTrigrams(document.title(), grams);
+        addTrigrams(document.description(), grams);
+        addTrigrams(document.originalFileName(), grams);
+        addTrigrams(document.username(), grams);
+        for (String tag : document.tags()) {
+            addTrigrams(tag, grams);
+        }
+        return grams;
+    }
+
+    private Set<String> trigrams(String value) {
+        Set<String> grams = new HashSet<>();
+        addTrigrams(value, grams);
+        return grams;
+    }
+
+    private void addTrigrams(String value, Set<String> grams) {
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+    }
+
+    private String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Upload date as epoch milliseconds; a user id of 0 means no uploader
+    private record IndexedDocument(long id, long userId, long uploadDate, String title, String description,
+                                   String originalFileName, String username, List<String> tags) {
+    }
+
+    private record ScoredDocument(IndexedDocument document, int score) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.imagemanager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pages of search results, the image ids and the total, by normalized query, page and size.
+ * Entries are bounded by {@code search.result-cache.max-size} and expire after
+ * {@code search.result-cache.ttl-seconds}. Writes that can change which images match a query
+ * call {@link #invalidate()} once they have committed, which moves to a new generation; a search
+ * that was already running stores its result under the old one, where it is never read. Concurrent misses on the same
+ * page wait for one search. Hits and misses are exported as the {@code cache.*} metrics with
+ * {@code cache=search-results}.
+ */
+@Service
+public class SearchResultCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${search.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.result-cache.max-size:1000}")
+    private long maxSize;
+
+    @Value("${search.result-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final AtomicLong generation = new AtomicLong();
+    private Cache<Key, Entry> cache;
+
+    private record Key(String query, int page, int size, long generation) {
+    }
+
+    private record Entry(List<Long> ids, long total) {
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search-results");
+    }
+
+    /**
+     * Trims and lower-cases a query. Every search path matches case-insensitively, so queries
+     * that differ only in case share an entry.
+     */
+    public static String normalize(String query) {
+        return query.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the cached page for the normalized query, running {@code search} on a miss.
+     * A failed search is not cached.
+     */
+    public Page<Long> get(String query, Pageable pageable, Supplier<Page<Long>> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        Key key = new Key(query, pageable.getPageNumber(), pageable.getPageSize(), generation.get());
+        Entry entry = cache.get(key, k -> {
+            Page<Long> page = search.get();
+            return new Entry(List.copyOf(page.getContent()), page.getTotalElements());
+        });
+        return new PageImpl<>(entry.ids(), pageable, entry.total());
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,149 @@
+package com.imagemanager.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fans files out over two levels of 256 directories, {@code ab/cd/<name>}, so no directory
+ * grows past a few hundred entries however many files are stored. The shard comes from the
+ * part of the name before the first dot: content hashes and UUIDs already start with four hex
+ * digits and use those, anything else is hashed. Derivatives such as {@code <name>.thumb-256.jpg}
+ * therefore land in the same directory as their original.
+ * <p>
+ * Files still in the flat root are found as a fallback, so a tree can be switched to this
+ * layout first and migrated afterwards while the application keeps serving.
+ */
+public class ShardedStorageLayout implements StorageLayout {
+
+    private static final String HEX = "0123456789abcdef";
+
+    private final Path root;
+    private final ForkJoinPool listingPool;
+
+    public ShardedStorageLayout(Path root, int listingThreads) {
+        this.root = root;
+        this.listingPool = new ForkJoinPool(Math.max(1, listingThreads));
+    }
+
+    public static String shardOf(String fileName) {
+        int dot = fileName.indexOf('.');
+        String baseName = dot >= 0 ? fileName.substring(0, dot) : fileName;
+        if (baseName.length() >= 4 && isHex(baseName, 4)) {
+            return baseName.substring(0, 2) + "/" + baseName.substring(2, 4);
+        }
+        int mixed = baseName.hashCode() * 0x9E3779B9;
+        return String.format("%02x/%02x", (mixed >>> 24) & 0xFF, (mixed >>> 16) & 0xFF);
+    }
+
+    @Override
+    public Path root() {
+        return root;
+    }
+
+    @Override
+    public Path resolve(String fileName) {
+        Path sharded = root.resolve(shardOf(fileName)).resolve(fileName);
+        if (Files.exists(sharded)) {
+            return sharded;
+        }
+        Path flat = root.resolve(fileName);
+        return Files.exists(flat) ? flat : sharded;
+    }
+
+    @Override
+    public Path prepare(String fileName) throws IOException {
+        Path sharded = root.resolve(shardOf(fileName)).resolve(fileName);
+        Files.createDirectories(sharded.getParent());
+        return sharded;
+    }
+
+    /**
+     * Removes both names, since a file being migrated has both for a while, then tries the
+     * shard again in case the file was moved there between the two.
+     */
+    @Override
+    public boolean delete(String fileName) throws IOException {
+        Path sharded = root.resolve(shardOf(fileName)).resolve(fileName);
+        boolean deleted = Files.deleteIfExists(sharded);
+        deleted |= Files.deleteIfExists(root.resolve(fileName));
+        return Files.deleteIfExists(sharded) || deleted;
+    }
+
+    /**
+     * Lists the unmigrated flat files, then walks the first-level shards in parallel.
+     */
+    @Override
+    public List<Path> listFiles() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        List<Path> files = new ArrayList<>();
+        List<Path> shards = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(root)) {
+            for (Path entry : (Iterable<Path>) listing::iterator) {
+                if (isShardDirectory(entry)) {
+                    shards.add(entry);
+                } else if (isVisibleFile(entry)) {
+                    files.add(entry);
+                }
+            }
+        }
+        try {
+            files.addAll(listingPool.submit(() -> shards.parallelStream()
+                    .flatMap(shard -> listShard(shard).stream())
+                    .collect(Collectors.toList())).get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while listing " + root, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            throw new IOException("Could not list " + root, e.getCause());
+        }
+        return files;
+    }
+
+    private List<Path> listShard(Path shard) {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> second = Files.list(shard)) {
+            for (Path directory : (Iterable<Path>) second::iterator) {
+                if (!isShardDirectory(directory)) {
+                    continue;
+                }
+                try (Stream<Path> listing = Files.list(directory)) {
+                    listing.filter(ShardedStorageLayout::isVisibleFile).forEach(files::add);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    static boolean isVisibleFile(Path path) {
+        return !path.getFileName().toString().startsWith(".") && Files.isRegularFile(path);
+    }
+
+    private static boolean isShardDirectory(Path path) {
+        String name = path.getFileName().toString();
+        return name.length() == 2 && isHex(name, 2) && Files.isDirectory(path);
+    }
+
+    private static boolean isHex(String value, int length) {
+        for (int i = 0; i < length; i++) {
+            if (HEX.indexOf(value.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package com.imagemanager.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Maps stored file names to paths under the upload directory. Callers only ever deal in
+ * file names; where a name lives on disk is up to the layout.
+ */
+public interface StorageLayout {
+
+    Path root();
+
+    /**
+     * Returns the path the file currently lives at, or the path it would be written to when it
+     * does not exist.
+     */
+    Path resolve(String fileName);
+
+    /**
+     * Returns the path a new file with this name should be written to, creating its parent
+     * directories.
+     */
+    Path prepare(String fileName) throws IOException;
+
+    /**
+     * Deletes the file wherever it lives. Returns true if a file was removed.
+     */
+    boolean delete(String fileName) throws IOException;
+
+    /**
+     * Lists every stored file, derivatives included. Hidden entries and the directories the
+     * layout itself creates are skipped.
+     */
+    List<Path> listFiles() throws IOException;
+}
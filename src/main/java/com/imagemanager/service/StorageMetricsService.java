@@ -0,0 +1,77 @@
+package com.imagemanager.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+/**
+ * Publishes the size and file count of the upload directory as gauges. Walking the directory
+ * is not free on a large store, so the result is reused for a configurable interval rather
+ * than recomputed on every scrape.
+ */
+@Service
+public class StorageMetricsService {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+    
+    @Value("${metrics.upload-dir.refresh-seconds:60}")
+    private long refreshSeconds;
+    
+    private long files;
+    private long bytes;
+    private long scannedAt;
+    
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("imagemanager.uploads.files", this, metrics -> metrics.snapshot()[0])
+                .description("Files in the upload directory, including thumbnails")
+                .register(meterRegistry);
+        Gauge.builder("imagemanager.uploads.size", this, metrics -> metrics.snapshot()[1])
+                .description("Total size of the upload directory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    private synchronized long[] snapshot() {
+        long now = System.currentTimeMillis();
+        if (scannedAt == 0 || now - scannedAt >= refreshSeconds * 1000) {
+            scan();
+            scannedAt = now;
+        }
+        return new long[] { files, bytes };
+    }
+    
+    private void scan() {
+        Path uploadPath = Paths.get(uploadDir);
+        if (!Files.exists(uploadPath)) {
+            files = 0;
+            bytes = 0;
+            return;
+        }
+        long count = 0;
+        long total = 0;
+        try (Stream<Path> walk = Files.walk(uploadPath)) {
+            for (Path path : (Iterable<Path>) walk.filter(Files::isRegularFile)::iterator) {
+                count++;
+                total += Files.size(path);
+            }
+            files = count;
+            bytes = total;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not measure upload directory: " + e.getMessage());
+        }
+    }
+}
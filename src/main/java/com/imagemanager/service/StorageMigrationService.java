@@ -0,0 +1,152 @@
+package com.imagemanager.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves files left in the root of the upload directory to where the configured layout wants
+ * them, while the application keeps running. Each file is first hard-linked at its new place,
+ * which the layout prefers from then on, and its old name is only removed
+ * {@code storage.migration.grace-ms} later. A reader that resolved the old name just before the
+ * link can still open it, so readers never see a file missing. Where the file system has no
+ * hard links the file is renamed instead, and such a reader can get a 404. Work is done in
+ * batches with a pause in between to leave disk bandwidth for uploads.
+ */
+@Service
+public class StorageMigrationService {
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Value("${storage.migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${storage.migration.pause-ms:100}")
+    private long pauseMillis;
+
+    @Value("${storage.migration.grace-ms:10000}")
+    private long graceMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private record Linked(Path file, long at) {
+    }
+
+    /**
+     * Starts the migration on a background thread. Returns false if one is already running.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                int moved = migrate();
+                System.out.println("Storage migration moved " + moved + " files in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Storage migration stopped: " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        }, "storage-migration");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private int migrate() throws IOException {
+        Path root = storageLayout.root();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(root)) {
+            files = listing.filter(ShardedStorageLayout::isVisibleFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .collect(Collectors.toList());
+        }
+
+        int moved = 0;
+        Deque<Linked> linked = new ArrayDeque<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            Path target = storageLayout.prepare(file.getFileName().toString());
+            if (!target.equals(file)) {
+                try {
+                    if (link(file, target)) {
+                        linked.add(new Linked(file, System.currentTimeMillis()));
+                    }
+                    moved++;
+                } catch (NoSuchFileException e) {
+                    // Deleted since the listing
+                }
+            }
+            if ((i + 1) % batchSize == 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    // Names left behind are found again, and removed, by the next run
+                    Thread.currentThread().interrupt();
+                    return moved;
+                }
+                removeOldNames(linked, System.currentTimeMillis() - graceMillis);
+            }
+        }
+        if (!linked.isEmpty()) {
+            try {
+                Thread.sleep(Math.max(0, linked.getLast().at() + graceMillis - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return moved;
+            }
+            removeOldNames(linked, Long.MAX_VALUE);
+        }
+        return moved;
+    }
+
+    /**
+     * Gives the file its new name as a second hard link. Returns true when the old name is left
+     * to be removed, false when the file system has no hard links and the file was renamed.
+     */
+    private boolean link(Path file, Path target) throws IOException {
+        try {
+            Files.createLink(target, file);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            // Linked by a run that stopped early, or written since; readers get the new place either way
+            return true;
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return false;
+        }
+    }
+
+    private void removeOldNames(Deque<Linked> linked, long linkedBefore) throws IOException {
+        while (!linked.isEmpty() && linked.getFirst().at() <= linkedBefore) {
+            Files.deleteIfExists(linked.removeFirst().file());
+        }
+    }
+}
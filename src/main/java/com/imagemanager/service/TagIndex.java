@@ -0,0 +1,141 @@
+package com.imagemanager.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Tag name to image id bitmaps, plus a bitmap of every image id for negated terms. Image ids
+ * must fit in an int. Snapshots are a header, the bitmaps and a CRC32 of both, written to a
+ * temporary file and moved into place. Not thread-safe.
+ */
+public class TagIndex {
+
+    private static final int MAGIC = 0x54474958; // "TGIX"
+    private static final int VERSION = 1;
+
+    private final Map<String, CompressedBitmap> postings = new HashMap<>();
+    private CompressedBitmap all = new CompressedBitmap();
+    private long maxImageId;
+
+    public record Result(long[] ids, int total) {
+    }
+
+    public void addImage(long imageId, Collection<String> tagNames) {
+        int id = toInt(imageId);
+        all.add(id);
+        maxImageId = Math.max(maxImageId, imageId);
+        for (String name : tagNames) {
+            postings.computeIfAbsent(name, n -> new CompressedBitmap()).add(id);
+        }
+    }
+
+    public void removeImage(long imageId, Collection<String> tagNames) {
+        all.remove(toInt(imageId));
+        for (String name : tagNames) {
+            removeTag(imageId, name);
+        }
+    }
+
+    public void addTag(long imageId, String name) {
+        postings.computeIfAbsent(name, n -> new CompressedBitmap()).add(toInt(imageId));
+    }
+
+    public void removeTag(long imageId, String name) {
+        CompressedBitmap bitmap = postings.get(name);
+        if (bitmap != null && bitmap.remove(toInt(imageId)) && bitmap.isEmpty()) {
+            postings.remove(name);
+        }
+    }
+
+    public int imageCount() {
+        return all.cardinality();
+    }
+
+    public int tagCount() {
+        return postings.size();
+    }
+
+    public long maxImageId() {
+        return maxImageId;
+    }
+
+    /**
+     * Evaluates the query and returns one page of matching ids, highest id, which is newest
+     * upload, first, with the total number of matches.
+     */
+    public Result query(TagQuery query, int offset, int limit) {
+        CompressedBitmap matches = query.evaluate(postings::get, () -> all);
+        int[] page = matches.descending(offset, limit);
+        long[] ids = new long[page.length];
+        for (int i = 0; i < page.length; i++) {
+            ids[i] = page[i];
+        }
+        return new Result(ids, matches.cardinality());
+    }
+
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(maxImageId);
+            all.write(out);
+            out.writeInt(postings.size());
+            for (Map.Entry<String, CompressedBitmap> entry : postings.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+            out.flush();
+            new DataOutputStream(raw).writeLong(crc.getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot, failing with an IOException if it is truncated, from another version or
+     * does not match its checksum.
+     */
+    public static TagIndex read(Path file) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a tag index snapshot of version " + VERSION);
+            }
+            TagIndex index = new TagIndex();
+            index.maxImageId = in.readLong();
+            index.all = CompressedBitmap.read(in);
+            int tags = in.readInt();
+            for (int i = 0; i < tags; i++) {
+                index.postings.put(in.readUTF(), CompressedBitmap.read(in));
+            }
+            if (new DataInputStream(raw).readLong() != crc.getValue()) {
+                throw new IOException("Tag index snapshot checksum mismatch");
+            }
+            return index;
+        }
+    }
+
+    private static int toInt(long imageId) {
+        if (imageId < 0 || imageId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image id " + imageId + " does not fit the tag index");
+        }
+        return (int) imageId;
+    }
+}
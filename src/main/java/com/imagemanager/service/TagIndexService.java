@@ -0,0 +1,273 @@
+package com.imagemanager.service;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.Tag;
+import com.imagemanager.repository.ImageRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Answers boolean tag queries, see {@link TagQuery}, from an in-memory {@link TagIndex} of
+ * compressed bitmaps. The write paths keep it current. At startup it is loaded from the snapshot
+ * written at the last clean shutdown, or rebuilt from the database when there is none or it does
+ * not match the image table. A loaded snapshot is deleted, so after a crash the index is rebuilt
+ * rather than trusted. Until the index is ready, queries are evaluated from the database.
+ */
+@Service
+public class TagIndexService {
+
+    private static final String SNAPSHOT_FILE = ".tag-index";
+    private static final int REBUILD_BATCH_SIZE = 10_000;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Value("${search.tag-index.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TagIndex index = new TagIndex();
+    // Changes made while a rebuild runs, replayed onto the rebuilt index before it is swapped in
+    private List<Consumer<TagIndex>> pending;
+    private volatile boolean ready = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled && !loadSnapshot()) {
+            rebuild();
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshot() {
+        if (!isReady()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        lock.readLock().lock();
+        try {
+            index.write(snapshotPath());
+            System.out.println("Tag index snapshot written: " + index.imageCount() + " images, "
+                    + index.tagCount() + " tags in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException e) {
+            System.err.println("Could not write the tag index snapshot: " + e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Reloads every image id and tag assignment from the database in id batches and swaps in
+     * the new index.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        TagIndex rebuilt = new TagIndex();
+        try {
+            long afterId = 0;
+            List<Long> ids;
+            do {
+                ids = imageRepository.findIdsAfter(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Map<Long, List<String>> tagsById = new HashMap<>();
+                for (Object[] row : imageRepository.findTagNamesByImageIdBetween(ids.get(0), ids.get(ids.size() - 1))) {
+                    tagsById.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+                }
+                for (Long id : ids) {
+                    rebuilt.addImage(id, tagsById.getOrDefault(id, List.of()));
+                }
+                afterId = ids.get(ids.size() - 1);
+            } while (ids.size() == REBUILD_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.err.println("Tag index rebuild failed, tag queries use the database: " + e.getMessage());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pending.forEach(change -> change.accept(rebuilt));
+            pending = null;
+            index = rebuilt;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Tag index rebuilt: " + rebuilt.imageCount() + " images, " + rebuilt.tagCount()
+                + " tags in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Adds a newly saved image. Its tags must be initialised.
+     */
+    public void index(Image image) {
+        if (image.getId() == null) {
+            return;
+        }
+        Long imageId = image.getId();
+        List<String> names = tagNames(image);
+        apply(index -> index.addImage(imageId, names));
+    }
+
+    /**
+     * Drops an image that is being deleted. Its tags must be initialised.
+     */
+    public void remove(Image image) {
+        if (image.getId() == null) {
+            return;
+        }
+        Long imageId = image.getId();
+        List<String> names = tagNames(image);
+        apply(index -> index.removeImage(imageId, names));
+    }
+
+    public void addTag(Long imageId, String tagName) {
+        apply(index -> index.addTag(imageId, tagName));
+    }
+
+    public void removeTag(Long imageId, String tagName) {
+        apply(index -> index.removeTag(imageId, tagName));
+    }
+
+    /**
+     * Returns the ids of the images matching the query, newest upload first.
+     */
+    public Page<Long> search(TagQuery query, Pageable pageable) {
+        int offset = (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE);
+        if (isReady()) {
+            lock.readLock().lock();
+            try {
+                TagIndex.Result result = index.query(query, offset, pageable.getPageSize());
+                return new PageImpl<>(Arrays.stream(result.ids()).boxed().collect(Collectors.toList()),
+                        pageable, result.total());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        CompressedBitmap matches = query.evaluate(name -> bitmapOf(imageRepository.findIdsByTagName(name)),
+                this::allIdsFromDatabase);
+        List<Long> ids = Arrays.stream(matches.descending(offset, pageable.getPageSize()))
+                .mapToObj(id -> (long) id)
+                .collect(Collectors.toList());
+        return new PageImpl<>(ids, pageable, matches.cardinality());
+    }
+
+    private void apply(Consumer<TagIndex> change) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Tag index not updated: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean loadSnapshot() {
+        Path file = snapshotPath();
+        if (!Files.exists(file)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            TagIndex loaded = TagIndex.read(file);
+            Long maxId = imageRepository.findMaxId();
+            if (loaded.imageCount() != imageRepository.countAllImages()
+                    || loaded.maxImageId() != (maxId != null ? maxId : 0)) {
+                System.out.println("Tag index snapshot does not match the image table, rebuilding");
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                index = loaded;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("Tag index loaded from snapshot: " + loaded.imageCount() + " images, "
+                    + loaded.tagCount() + " tags in " + (System.currentTimeMillis() - start) + " ms");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not load the tag index snapshot: " + e.getMessage());
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Could not delete the tag index snapshot: " + e.getMessage());
+            }
+        }
+    }
+
+    private CompressedBitmap allIdsFromDatabase() {
+        CompressedBitmap all = new CompressedBitmap();
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = imageRepository.findIdsAfter(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            ids.forEach(id -> all.add(Math.toIntExact(id)));
+            afterId = ids.isEmpty() ? afterId : ids.get(ids.size() - 1);
+        } while (ids.size() == REBUILD_BATCH_SIZE);
+        return all;
+    }
+
+    private static CompressedBitmap bitmapOf(List<Long> ids) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        ids.forEach(id -> bitmap.add(Math.toIntExact(id)));
+        return bitmap;
+    }
+
+    private static List<String> tagNames(Image image) {
+        return image.getTags() == null ? List.of()
+                : image.getTags().stream().map(Tag::getName).collect(Collectors.toList());
+    }
+
+    private Path snapshotPath() {
+        return storageLayout.root().resolve(SNAPSHOT_FILE);
+    }
+}
@@ -0,0 +1,230 @@
+package com.imagemanager.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Boolean query over tags, such as {@code tag:cat AND tag:outdoor AND NOT tag:blurry}. Terms are
+ * {@code tag:name}, or {@code tag:"two words"}, combined with {@code AND}, {@code OR},
+ * {@code NOT} or a leading {@code -}, and parentheses. Adjacent terms are ANDed and AND binds
+ * tighter than OR. Operators are case-insensitive; names are matched lower-cased, as tags are
+ * stored.
+ */
+public final class TagQuery {
+
+    private static final String PREFIX = "tag:";
+
+    private final Node root;
+    private final Set<String> tagNames = new LinkedHashSet<>();
+
+    private TagQuery(String query) {
+        Parser parser = new Parser(query);
+        this.root = parser.parseOr();
+        if (parser.peek() != null) {
+            throw new IllegalArgumentException("Unexpected '" + parser.peek() + "' in tag query");
+        }
+    }
+
+    /**
+     * Parses a query that uses the tag syntax, or returns null for one that does not mention
+     * {@code tag:} and is therefore a text search. Throws IllegalArgumentException when a tag
+     * query is malformed.
+     */
+    public static TagQuery parse(String query) {
+        if (query == null || !query.toLowerCase(Locale.ROOT).contains(PREFIX)) {
+            return null;
+        }
+        return new TagQuery(query);
+    }
+
+    public Set<String> tagNames() {
+        return tagNames;
+    }
+
+    /**
+     * Evaluates the query against per-tag bitmaps. {@code all} is only asked for when the query
+     * negates a term that is not ANDed with a positive one.
+     */
+    public CompressedBitmap evaluate(Function<String, CompressedBitmap> postings, Supplier<CompressedBitmap> all) {
+        return root.evaluate(postings, all);
+    }
+
+    private interface Node {
+        CompressedBitmap evaluate(Function<String, CompressedBitmap> postings, Supplier<CompressedBitmap> all);
+    }
+
+    private record Term(String name) implements Node {
+        @Override
+        public CompressedBitmap evaluate(Function<String, CompressedBitmap> postings, Supplier<CompressedBitmap> all) {
+            CompressedBitmap bitmap = postings.apply(name);
+            return bitmap != null ? bitmap : new CompressedBitmap();
+        }
+    }
+
+    private record Not(Node operand) implements Node {
+        @Override
+        public CompressedBitmap evaluate(Function<String, CompressedBitmap> postings, Supplier<CompressedBitmap> all) {
+            return all.get().andNot(operand.evaluate(postings, all));
+        }
+    }
+
+    private record Or(List<Node> operands) implements Node {
+        @Override
+        public CompressedBitmap evaluate(Function<String, CompressedBitmap> postings, Supplier<CompressedBitmap> all) {
+            CompressedBitmap result = new CompressedBitmap();
+            for (Node operand : operands) {
+                result = result.or(operand.evaluate(postings, all));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Intersects the positive operands smallest first, then subtracts the negated ones, so
+     * {@code a AND NOT b} never materialises the complement of {@code b}.
+     */
+    private record And(List<Node> operands) implements Node {
+        @Override
+        public CompressedBitmap evaluate(Function<String, CompressedBitmap> postings, Supplier<CompressedBitmap> all) {
+            List<CompressedBitmap> included = new ArrayList<>();
+            List<CompressedBitmap> excluded = new ArrayList<>();
+            for (Node operand : operands) {
+                if (operand instanceof Not not) {
+                    excluded.add(not.operand().evaluate(postings, all));
+                } else {
+                    included.add(operand.evaluate(postings, all));
+                }
+            }
+            included.sort(Comparator.comparingInt(CompressedBitmap::cardinality));
+
+            CompressedBitmap result = included.isEmpty() ? all.get() : included.get(0);
+            for (int i = 1; i < included.size() && !result.isEmpty(); i++) {
+                result = result.and(included.get(i));
+            }
+            for (CompressedBitmap bitmap : excluded) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                result = result.andNot(bitmap);
+            }
+            return result;
+        }
+    }
+
+    private final class Parser {
+
+        private final List<String> tokens = new ArrayList<>();
+        private int position;
+
+        Parser(String query) {
+            int i = 0;
+            while (i < query.length()) {
+                char c = query.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')' || c == '-') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (query.regionMatches(true, i, PREFIX, 0, PREFIX.length())) {
+                    i = readTerm(query, i + PREFIX.length());
+                } else {
+                    int end = i;
+                    while (end < query.length() && !Character.isWhitespace(query.charAt(end))
+                            && query.charAt(end) != '(' && query.charAt(end) != ')') {
+                        end++;
+                    }
+                    String word = query.substring(i, end).toUpperCase(Locale.ROOT);
+                    if (!word.equals("AND") && !word.equals("OR") && !word.equals("NOT")) {
+                        throw new IllegalArgumentException("Tag queries combine tag:name terms with AND, OR, NOT "
+                                + "and parentheses; found '" + query.substring(i, end) + "'");
+                    }
+                    tokens.add(word);
+                    i = end;
+                }
+            }
+        }
+
+        private int readTerm(String query, int start) {
+            int end;
+            String name;
+            if (start < query.length() && query.charAt(start) == '"') {
+                end = query.indexOf('"', start + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed quote in tag query");
+                }
+                name = query.substring(start + 1, end);
+                end++;
+            } else {
+                end = start;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))
+                        && query.charAt(end) != ')') {
+                    end++;
+                }
+                name = query.substring(start, end);
+            }
+            name = name.trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty tag name in tag query");
+            }
+            tokens.add(PREFIX + name);
+            return end;
+        }
+
+        String peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while ("OR".equals(peek())) {
+                position++;
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (peek() != null && !"OR".equals(peek()) && !")".equals(peek())) {
+                if ("AND".equals(peek())) {
+                    position++;
+                }
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        Node parseUnary() {
+            String token = peek();
+            if (token == null) {
+                throw new IllegalArgumentException("Tag query ends where a tag:name term was expected");
+            }
+            position++;
+            if (token.equals("NOT") || token.equals("-")) {
+                return new Not(parseUnary());
+            }
+            if (token.equals("(")) {
+                Node inner = parseOr();
+                if (!")".equals(peek())) {
+                    throw new IllegalArgumentException("Missing ')' in tag query");
+                }
+                position++;
+                return inner;
+            }
+            if (token.startsWith(PREFIX)) {
+                String name = token.substring(PREFIX.length());
+                tagNames.add(name);
+                return new Term(name);
+            }
+            throw new IllegalArgumentException("Expected a tag:name term in tag query, found '" + token + "'");
+        }
+    }
+}
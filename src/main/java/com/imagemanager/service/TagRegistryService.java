@@ -0,0 +1,143 @@
+package com.imagemanager.service;
+
+import com.imagemanager.entity.Tag;
+import com.imagemanager.repository.TagRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resolves tag names to tag rows, creating the missing ones. Known names are mapped to ids in
+ * memory so a batch of tags costs one lookup by id. Creation is serialised per name through a
+ * fixed set of lock stripes, so concurrent requests adding the same new tag insert it once, and
+ * the insert itself skips names that already exist so other instances cannot make it fail.
+ * The new rows are read back with a locking read, because under MySQL's REPEATABLE READ a
+ * plain read inside the caller's transaction does not see a row another instance committed
+ * after that transaction's first read.
+ */
+@Service
+public class TagRegistryService {
+
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public TagRegistryService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (Object[] row : tagRepository.findAllIdsAndNames()) {
+            idsByName.put((String) row[1], (Long) row[0]);
+        }
+        System.out.println("Tag registry loaded " + idsByName.size() + " tags");
+    }
+
+    public Tag resolve(String name) {
+        return resolveAll(List.of(name)).get(name);
+    }
+
+    /**
+     * Returns the tag for every name, in the order given, creating the ones that do not exist.
+     * Names are expected to be cleaned already, see {@link ImageService#parseTagNames(String)}.
+     * Throws IllegalArgumentException for a name longer than the column, which the insert
+     * would otherwise truncate.
+     */
+    public Map<String, Tag> resolveAll(Collection<String> names) {
+        Set<String> wanted = new LinkedHashSet<>(names);
+        Map<String, Tag> found = new HashMap<>();
+        if (wanted.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        for (String name : wanted) {
+            if (name.isEmpty() || name.length() > Tag.MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Tag names must be 1 to " + Tag.MAX_NAME_LENGTH + " characters");
+            }
+        }
+
+        Map<Long, String> knownIds = new HashMap<>();
+        for (String name : wanted) {
+            Long id = idsByName.get(name);
+            if (id != null) {
+                knownIds.put(id, name);
+            }
+        }
+        if (!knownIds.isEmpty()) {
+            for (Tag tag : tagRepository.findAllById(knownIds.keySet())) {
+                found.put(tag.getName(), tag);
+            }
+            // Tags deleted since they were cached are dropped and go through creation again
+            knownIds.values().stream().filter(name -> !found.containsKey(name)).forEach(idsByName::remove);
+        }
+
+        List<String> missing = wanted.stream().filter(name -> !found.containsKey(name)).toList();
+        if (!missing.isEmpty()) {
+            found.putAll(create(missing));
+        }
+
+        Map<String, Tag> ordered = new LinkedHashMap<>();
+        for (String name : wanted) {
+            ordered.put(name, found.get(name));
+        }
+        return ordered;
+    }
+
+    /**
+     * Forgets a name whose tag row has been deleted.
+     */
+    public void evict(String name) {
+        idsByName.remove(name);
+    }
+
+    private Map<String, Tag> create(List<String> names) {
+        int[] held = names.stream().mapToInt(this::stripeOf).distinct().sorted().toArray();
+        for (int stripe : held) {
+            stripes[stripe].lock();
+        }
+        try {
+            Map<String, Tag> created = new HashMap<>();
+            for (Tag tag : tagRepository.findByNameIn(names)) {
+                created.put(tag.getName(), tag);
+            }
+            // Sorted so two instances inserting the same names lock them in the same order
+            List<String> absent = names.stream().filter(name -> !created.containsKey(name)).sorted().toList();
+            if (!absent.isEmpty()) {
+                tagRepository.insertIgnoringDuplicates(absent);
+                meterRegistry.counter("imagemanager.tags.created").increment(absent.size());
+                for (Tag tag : tagRepository.findCommittedByNameIn(absent)) {
+                    created.put(tag.getName(), tag);
+                }
+            }
+            List<String> unresolved = names.stream().filter(name -> !created.containsKey(name)).toList();
+            if (!unresolved.isEmpty()) {
+                throw new IllegalStateException("Tags " + unresolved + " were neither inserted nor found");
+            }
+            created.forEach((name, tag) -> idsByName.put(name, tag.getId()));
+            return created;
+        } finally {
+            for (int i = held.length - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+    }
+
+    private int stripeOf(String name) {
+        return Math.floorMod(name.hashCode(), STRIPES);
+    }
+}
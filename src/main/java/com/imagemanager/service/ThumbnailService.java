@@ -0,0 +1,245 @@
+package com.imagemanager.service;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.repository.ImageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Generates and resolves downscaled JPEG derivatives stored next to the original upload
+ * as {@code <name>.thumb-<size>.jpg}, where size is the bound on the longest edge.
+ */
+@Service
+public class ThumbnailService {
+
+    private static final String THUMB_MARKER = ".thumb-";
+    private static final float JPEG_QUALITY = 0.85f;
+    private static final int BACKFILL_BATCH_SIZE = 100;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private PackStoreService packStoreService;
+
+    @Value("${thumbnail.sizes:256,768,1600}")
+    private int[] sizes;
+
+    public static boolean isThumbnail(String fileName) {
+        return fileName.contains(THUMB_MARKER);
+    }
+
+    public static String thumbnailFileName(String fileName, int size) {
+        String baseName = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        return baseName + THUMB_MARKER + size + ".jpg";
+    }
+
+    /**
+     * Decodes the original once, subsampled so that the decoded raster is never much larger
+     * than the biggest derivative, then scales each smaller size from the previous one.
+     * Returns the derivatives written; files ImageIO cannot decode (videos, webp) yield none.
+     */
+    public List<Path> generateThumbnails(String fileName) throws IOException {
+        int[] descending = Arrays.stream(sizes).boxed().sorted(Comparator.reverseOrder())
+                .mapToInt(Integer::intValue).toArray();
+
+        BufferedImage decoded = decodeSubsampled(fileName, descending[0]);
+        if (decoded == null) {
+            return List.of();
+        }
+
+        List<Path> written = new ArrayList<>();
+        BufferedImage current = decoded;
+        int longestEdge = Math.max(decoded.getWidth(), decoded.getHeight());
+        for (int size : descending) {
+            if (size >= longestEdge) {
+                continue;
+            }
+            current = scale(current, size);
+            Path target = storageLayout.prepare(thumbnailFileName(fileName, size));
+            writeJpeg(current, target);
+            written.add(target);
+        }
+        return written;
+    }
+
+    /**
+     * Returns the smallest derivative whose bound is at least {@code requestedSize}. No
+     * derivative is generated at or above the original's longest edge, so when that one is
+     * missing the original is returned, as it is when no derivatives exist. Only a request
+     * above every configured size gets the largest derivative.
+     */
+    public Path resolveThumbnail(String fileName, int requestedSize) {
+        int[] ascending = Arrays.stream(sizes).sorted().toArray();
+
+        Path largest = null;
+        for (int size : ascending) {
+            Path candidate = storageLayout.resolve(thumbnailFileName(fileName, size));
+            if (size >= requestedSize) {
+                return Files.exists(candidate) ? candidate : storageLayout.resolve(fileName);
+            }
+            if (Files.exists(candidate)) {
+                largest = candidate;
+            }
+        }
+        return largest != null ? largest : storageLayout.resolve(fileName);
+    }
+
+    /**
+     * Decodes a small rendition of an image for analysis: the smallest derivative when one
+     * exists, otherwise the original subsampled to about the smallest derivative size.
+     * Returns null for files ImageIO cannot decode.
+     */
+    public BufferedImage decodePreview(String fileName) throws IOException {
+        int smallest = Arrays.stream(sizes).min().orElse(256);
+        Path derivative = storageLayout.resolve(thumbnailFileName(fileName, smallest));
+        if (Files.exists(derivative)) {
+            return ImageIO.read(derivative.toFile());
+        }
+        return decodeSubsampled(fileName, smallest);
+    }
+
+    public void deleteThumbnails(String fileName) {
+        for (int size : sizes) {
+            try {
+                storageLayout.delete(thumbnailFileName(fileName, size));
+            } catch (IOException e) {
+                System.out.println("Warning: Could not delete thumbnail: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean hasThumbnails(String fileName) {
+        for (int size : sizes) {
+            if (Files.exists(storageLayout.resolve(thumbnailFileName(fileName, size)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the images table page by page and generates derivatives for rows that have none yet.
+     * Returns the number of images that received thumbnails.
+     */
+    public int backfillThumbnails() {
+        int generated = 0;
+        int page = 0;
+        Page<Image> batch;
+        do {
+            batch = imageRepository.findAll(PageRequest.of(page++, BACKFILL_BATCH_SIZE, Sort.by("id")));
+            for (Image image : batch.getContent()) {
+                String fileName = image.getFileName();
+                if (hasThumbnails(fileName)
+                        || !(packStoreService.contains(fileName) || Files.exists(storageLayout.resolve(fileName)))) {
+                    continue;
+                }
+                try {
+                    if (!generateThumbnails(fileName).isEmpty()) {
+                        generated++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Error generating thumbnails for " + fileName + ": " + e.getMessage());
+                }
+            }
+        } while (batch.hasNext());
+        return generated;
+    }
+
+    private BufferedImage decodeSubsampled(String fileName, int maxSize) throws IOException {
+        try (ImageInputStream in = openImageStream(fileName)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longestEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longestEdge / maxSize);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ImageInputStream openImageStream(String fileName) throws IOException {
+        ByteBuffer packed = packStoreService.read(fileName);
+        if (packed != null) {
+            return new MemoryCacheImageInputStream(new ByteBufferInputStream(packed));
+        }
+        return ImageIO.createImageInputStream(storageLayout.resolve(fileName).toFile());
+    }
+
+    private BufferedImage scale(BufferedImage source, int maxSize) {
+        double ratio = (double) maxSize / Math.max(source.getWidth(), source.getHeight());
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
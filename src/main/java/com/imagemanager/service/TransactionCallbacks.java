@@ -0,0 +1,33 @@
+package com.imagemanager.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers work that cannot be rolled back, such as unlinking files or updating the in-memory
+ * indexes and caches, until the rows it mirrors are committed.
+ */
+final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Runs the action after the current transaction commits, and not at all if it rolls back.
+     * Without a transaction the action runs straight away. Database work in the action needs a
+     * transaction of its own, and it must not call this method again: the callbacks of the
+     * transaction have already been collected by then.
+     */
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
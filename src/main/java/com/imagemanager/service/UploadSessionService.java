@@ -0,0 +1,461 @@
+package com.imagemanager.service;
+
+import com.imagemanager.dto.UploadSessionStatus;
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.User;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Resumable uploads. A session preallocates {@code <id>.part} under the upload directory and
+ * each chunk is streamed straight to its offset in that file, checked against the SHA-256 the
+ * client sent with it. The first chunk must start with the magic bytes of an image or video.
+ * Once every chunk is in, the part file is moved into the blob store and saved like any other
+ * upload. Session state is written next to the part file so uploads survive a restart, and
+ * sessions idle for longer than the configured time are deleted. Sessions are limited to
+ * {@code upload.session.max-size} bytes, each user to {@code upload.session.max-per-user} open
+ * sessions, and a session is only opened when the disk can hold it next to the open ones.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final String SESSION_DIR = ".upload-sessions";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_MISSING_REPORTED = 1000;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private MediaStreamingService mediaStreamingService;
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    @Value("${upload.session.chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${upload.session.max-chunk-size:67108864}")
+    private int maxChunkSize;
+
+    @Value("${upload.session.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${upload.session.max-size:10737418240}")
+    private long maxSize;
+
+    @Value("${upload.session.max-per-user:10}")
+    private int maxPerUser;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Held while a session is checked against the limits and opened
+    private final Object createLock = new Object();
+    private ScheduledExecutorService reaper;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            loadSessions();
+        } catch (IOException e) {
+            System.err.println("Could not load upload sessions: " + e.getMessage());
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, Math.min(ttlMinutes, 60) / 4);
+        reaper.scheduleWithFixedDelay(this::expireSessions, interval, interval, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    public UploadSessionStatus create(User user, String fileName, long size, Integer chunkSize, String title,
+                                      String description, String tags) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("File size must be positive");
+        }
+        if (size > maxSize) {
+            throw new IllegalArgumentException("File size must not exceed " + maxSize + " bytes");
+        }
+        int chunk = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (chunk < BUFFER_SIZE || chunk > maxChunkSize) {
+            throw new IllegalArgumentException("Chunk size must be between " + BUFFER_SIZE + " and " + maxChunkSize);
+        }
+        long chunkCount = (size + chunk - 1) / chunk;
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many chunks, use a larger chunk size");
+        }
+
+        Session session = new Session();
+        session.id = UUID.randomUUID().toString();
+        session.userId = user.getId();
+        session.originalFileName = fileName;
+        session.title = title;
+        session.description = description;
+        session.tags = tags;
+        session.size = size;
+        session.chunkSize = chunk;
+        session.chunkCount = (int) chunkCount;
+        session.lastActivity = System.currentTimeMillis();
+
+        synchronized (createLock) {
+            long open = sessions.values().stream().filter(other -> other.userId.equals(user.getId())).count();
+            if (open >= maxPerUser) {
+                throw new IllegalStateException(open + " uploads are already open, finish or cancel one first");
+            }
+            Files.createDirectories(sessionDir());
+            // Part files are sparse, so count every open session as if it were complete
+            long reserved = sessions.values().stream().mapToLong(other -> other.size).sum();
+            if (Files.getFileStore(sessionDir()).getUsableSpace() - reserved < size) {
+                throw new IllegalStateException("Not enough free space for an upload of " + size + " bytes");
+            }
+            try (RandomAccessFile part = new RandomAccessFile(partFile(session.id).toFile(), "rw")) {
+                part.setLength(size);
+            }
+            persist(session);
+            sessions.put(session.id, session);
+        }
+        return status(session);
+    }
+
+    public UploadSessionStatus status(String sessionId, User user) {
+        Session session = owned(sessionId, user);
+        session.lastActivity = System.currentTimeMillis();
+        return status(session);
+    }
+
+    /**
+     * Writes one chunk at its offset. The chunk only counts as received when its length and
+     * checksum match; otherwise it has to be sent again. A chunk sent again is no longer counted
+     * while it is being rewritten, and {@link #complete} refuses to start while any chunk is
+     * being written, so the file it moves into the blob store is never written to afterwards.
+     */
+    public UploadSessionStatus writeChunk(String sessionId, User user, int index, InputStream body,
+                                          String checksum) throws IOException {
+        Session session = owned(sessionId, user);
+        if (index < 0 || index >= session.chunkCount) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (session.chunkCount - 1));
+        }
+        if (checksum == null || checksum.isBlank()) {
+            throw new IllegalArgumentException("Chunk checksum is required");
+        }
+
+        synchronized (session) {
+            if (session.completing) {
+                throw new IllegalStateException("Upload is already being finalized");
+            }
+            if (session.received.get(index)) {
+                session.received.clear(index);
+                persist(session);
+            }
+            session.writers++;
+        }
+        try {
+            return write(session, user, index, body, checksum);
+        } finally {
+            synchronized (session) {
+                session.writers--;
+            }
+        }
+    }
+
+    private UploadSessionStatus write(Session session, User user, int index, InputStream body,
+                                      String checksum) throws IOException {
+        String sessionId = session.id;
+        long position = (long) index * session.chunkSize;
+        long expected = Math.min(session.chunkSize, session.size - position);
+        MessageDigest digest = newDigest();
+        byte[] head = new byte[16];
+        int headLength = 0;
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(partFile(sessionId), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = body.read(buffer)) > 0) {
+                if (written + read > expected) {
+                    throw new IllegalArgumentException("Chunk " + index + " is longer than " + expected + " bytes");
+                }
+                if (headLength < head.length) {
+                    int copied = Math.min(read, head.length - headLength);
+                    System.arraycopy(buffer, 0, head, headLength, copied);
+                    headLength += copied;
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    written += channel.write(bytes, position + written);
+                }
+            }
+        }
+        if (written != expected) {
+            throw new IllegalArgumentException("Chunk " + index + " has " + written + " bytes, expected " + expected);
+        }
+        if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(checksum.trim())) {
+            throw new IllegalArgumentException("Checksum mismatch for chunk " + index);
+        }
+        if (index == 0) {
+            MediaType type = mediaStreamingService.sniff(head, headLength);
+            if (type == null || !("image".equals(type.getType()) || "video".equals(type.getType()))) {
+                abort(sessionId, user);
+                throw new IllegalArgumentException("Unsupported file type, upload cancelled");
+            }
+        }
+
+        synchronized (session) {
+            session.received.set(index);
+            session.lastActivity = System.currentTimeMillis();
+            persist(session);
+        }
+        return status(session);
+    }
+
+    /**
+     * Saves the assembled file as an image once every chunk has been received.
+     */
+    public Image complete(String sessionId, User user) throws IOException {
+        Session session = owned(sessionId, user);
+        synchronized (session) {
+            if (session.completing) {
+                throw new IllegalStateException("Upload is already being finalized");
+            }
+            if (session.writers > 0) {
+                throw new IllegalStateException(session.writers + " chunks are still being written");
+            }
+            int missing = session.chunkCount - session.received.cardinality();
+            if (missing > 0) {
+                throw new IllegalStateException(missing + " chunks have not been received");
+            }
+            session.completing = true;
+        }
+
+        try {
+            String title = session.title;
+            if (title == null || title.isBlank()) {
+                String name = session.originalFileName;
+                title = name != null && name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+            }
+            Image image = imageService.saveUploadedFile(partFile(sessionId), session.originalFileName, title,
+                    session.description, session.tags, user);
+            sessions.remove(sessionId);
+            Files.deleteIfExists(sessionFile(sessionId));
+            return image;
+        } catch (IOException | RuntimeException e) {
+            session.completing = false;
+            throw e;
+        }
+    }
+
+    public void abort(String sessionId, User user) throws IOException {
+        if (owned(sessionId, user).completing) {
+            throw new IllegalStateException("Upload is already being finalized");
+        }
+        delete(sessionId);
+    }
+
+    private Session owned(String sessionId, User user) {
+        Session session = sessions.get(sessionId);
+        if (session == null || !session.userId.equals(user.getId())) {
+            throw new NoSuchElementException("Upload session not found");
+        }
+        return session;
+    }
+
+    private UploadSessionStatus status(Session session) {
+        UploadSessionStatus status = new UploadSessionStatus();
+        List<Integer> missing = new ArrayList<>();
+        int firstMissing;
+        synchronized (session) {
+            firstMissing = session.received.nextClearBit(0);
+            for (int i = firstMissing; i < session.chunkCount && missing.size() < MAX_MISSING_REPORTED;
+                 i = session.received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            status.setReceivedChunks(session.received.cardinality());
+        }
+        status.setSessionId(session.id);
+        status.setFileName(session.originalFileName);
+        status.setSize(session.size);
+        status.setChunkSize(session.chunkSize);
+        status.setChunkCount(session.chunkCount);
+        status.setOffset(Math.min(session.size, (long) firstMissing * session.chunkSize));
+        status.setMissingChunks(missing);
+        status.setExpiresAt(LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(session.lastActivity).plusSeconds(ttlMinutes * 60), ZoneId.systemDefault()));
+        return status;
+    }
+
+    private void expireSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ttlMinutes);
+        for (Session session : sessions.values()) {
+            if (!session.completing && session.lastActivity < cutoff) {
+                try {
+                    delete(session.id);
+                    System.out.println("Expired upload session " + session.id + " for " + session.originalFileName);
+                } catch (IOException e) {
+                    System.err.println("Could not delete upload session " + session.id + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void delete(String sessionId) throws IOException {
+        sessions.remove(sessionId);
+        Files.deleteIfExists(partFile(sessionId));
+        Files.deleteIfExists(sessionFile(sessionId));
+    }
+
+    /**
+     * Restores the sessions written before a restart and removes part files that lost theirs.
+     */
+    private void loadSessions() throws IOException {
+        Path dir = sessionDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".session")) {
+                String id = name.substring(0, name.length() - ".session".length());
+                try {
+                    Session session = read(id);
+                    if (Files.exists(partFile(id))) {
+                        session.lastActivity = Files.getLastModifiedTime(file).toMillis();
+                        sessions.put(id, session);
+                        continue;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Dropping unreadable upload session " + id + ": " + e.getMessage());
+                }
+                delete(id);
+            }
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".tmp")
+                    || name.endsWith(".part") && !sessions.containsKey(name.substring(0, name.length() - ".part".length()))) {
+                Files.deleteIfExists(file);
+            }
+        }
+        if (!sessions.isEmpty()) {
+            System.out.println("Restored " + sessions.size() + " upload sessions");
+        }
+    }
+
+    private void persist(Session session) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("userId", session.userId.toString());
+        properties.setProperty("size", Long.toString(session.size));
+        properties.setProperty("chunkSize", Integer.toString(session.chunkSize));
+        properties.setProperty("received", Base64.getEncoder().encodeToString(session.received.toByteArray()));
+        setIfPresent(properties, "originalFileName", session.originalFileName);
+        setIfPresent(properties, "title", session.title);
+        setIfPresent(properties, "description", session.description);
+        setIfPresent(properties, "tags", session.tags);
+
+        Path target = sessionFile(session.id);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Session read(String id) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(sessionFile(id))) {
+            properties.load(in);
+        }
+        Session session = new Session();
+        session.id = id;
+        session.userId = Long.parseLong(properties.getProperty("userId"));
+        session.size = Long.parseLong(properties.getProperty("size"));
+        session.chunkSize = Integer.parseInt(properties.getProperty("chunkSize"));
+        session.chunkCount = (int) ((session.size + session.chunkSize - 1) / session.chunkSize);
+        session.received = BitSet.valueOf(Base64.getDecoder().decode(
+                properties.getProperty("received", "").getBytes(StandardCharsets.US_ASCII)));
+        session.originalFileName = properties.getProperty("originalFileName");
+        session.title = properties.getProperty("title");
+        session.description = properties.getProperty("description");
+        session.tags = properties.getProperty("tags");
+        return session;
+    }
+
+    private void setIfPresent(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private Path sessionDir() {
+        return Paths.get(uploadDir).resolve(SESSION_DIR);
+    }
+
+    private Path partFile(String sessionId) {
+        return sessionDir().resolve(sessionId + ".part");
+    }
+
+    private Path sessionFile(String sessionId) {
+        return sessionDir().resolve(sessionId + ".session");
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Session {
+        private String id;
+        private Long userId;
+        private String originalFileName;
+        private String title;
+        private String description;
+        private String tags;
+        private long size;
+        private int chunkSize;
+        private int chunkCount;
+        private BitSet received = new BitSet();
+        // Chunk writes in progress, guarded by the session's monitor
+        private int writers;
+        private volatile long lastActivity;
+        private volatile boolean completing;
+    }
+}
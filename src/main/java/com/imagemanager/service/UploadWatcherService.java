@@ -0,0 +1,309 @@
+package com.imagemanager.service;
+
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.User;
+import com.imagemanager.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches the upload directory and its shard directories and creates image rows for files
+ * copied into them by hand. A file is only ingested once it has stopped changing for the
+ * debounce interval, and the ready files are inserted together. The newest modification time
+ * ingested so far is kept in a manifest in the upload directory, so after a restart only files
+ * newer than it are looked up instead of the whole directory. Files copied in while the
+ * application was down with an older modification time ({@code cp -p}, {@code rsync -a},
+ * unzip) are not seen by that; {@link #fullSync(User)} compares every file name instead.
+ */
+@Service
+public class UploadWatcherService {
+
+    private static final String MANIFEST_FILE = ".ingest-manifest";
+    private static final int LOOKUP_BATCH_SIZE = 500;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Value("${ingest.watch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ingest.watch.debounce-ms:2000}")
+    private long debounceMillis;
+
+    @Value("${ingest.watch.owner:admin}")
+    private String ownerUsername;
+
+    private final Map<Path, PendingFile> pending = new HashMap<>();
+    private final Object ingestLock = new Object();
+    private volatile long highWaterMillis = 0;
+    private volatile WatchService watchService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Path uploadPath = storageLayout.root();
+            Files.createDirectories(uploadPath);
+            watchService = uploadPath.getFileSystem().newWatchService();
+            register(uploadPath);
+            watchSubdirectories(uploadPath);
+        } catch (IOException e) {
+            System.err.println("Could not watch upload directory: " + e.getMessage());
+            return;
+        }
+
+        highWaterMillis = readManifest();
+        Thread thread = new Thread(this::run, "upload-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Ingests files modified after the high-water mark that have no row yet, owned by the
+     * given user. While the watcher is keeping up this finds nothing and touches no tables.
+     * Returns the number of rows created.
+     */
+    public int catchUp(User owner) throws IOException {
+        long since = highWaterMillis;
+        List<Path> candidates = storageLayout.listFiles().stream().filter(ImageService::isImageFile)
+                .filter(path -> lastModified(path) > since)
+                .collect(Collectors.toList());
+
+        int created = 0;
+        for (int from = 0; from < candidates.size(); from += LOOKUP_BATCH_SIZE) {
+            created += ingest(candidates.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, candidates.size())), owner,
+                    "catchup");
+        }
+        return created;
+    }
+
+    /**
+     * Ingests every file that has no row yet, whatever its modification time, by comparing
+     * names against the database in batches. Returns the number of rows created.
+     */
+    public int fullSync(User owner) throws IOException {
+        List<Path> files = storageLayout.listFiles().stream().filter(ImageService::isImageFile)
+                .collect(Collectors.toList());
+        int created = 0;
+        for (int from = 0; from < files.size(); from += LOOKUP_BATCH_SIZE) {
+            created += ingest(files.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, files.size())), owner, "sync");
+        }
+        return created;
+    }
+
+    private void run() {
+        try {
+            int caughtUp = catchUp(defaultOwner());
+            if (caughtUp > 0) {
+                System.out.println("Ingested " + caughtUp + " files added while the application was down");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error catching up upload directory: " + e.getMessage());
+        }
+
+        while (true) {
+            try {
+                WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    collect(key);
+                }
+                flushSettled();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error ingesting upload directory changes: " + e.getMessage());
+            }
+        }
+    }
+
+    private void collect(WatchKey key) throws IOException {
+        Path uploadPath = (Path) key.watchable();
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path file = uploadPath.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && isWatchedDirectory(file)) {
+                // Files can land in a new shard before it is registered, so pick those up too
+                register(file);
+                watchSubdirectories(file);
+                try (Stream<Path> listing = Files.walk(file)) {
+                    listing.filter(ImageService::isImageFile).filter(Files::isRegularFile)
+                            .forEach(this::addPending);
+                }
+            } else if (ImageService.isImageFile(file)) {
+                addPending(file);
+            }
+        }
+        key.reset();
+        if (overflow) {
+            catchUp(defaultOwner());
+        }
+    }
+
+    private void addPending(Path file) {
+        pending.put(file, new PendingFile(System.currentTimeMillis(), size(file)));
+    }
+
+    /**
+     * Registers the directories below {@code directory}, such as the two levels of shard
+     * directories. A directory that cannot be watched, for instance past the inotify watch
+     * limit, is only reached by {@link #catchUp} and {@link #fullSync}.
+     */
+    private void watchSubdirectories(Path directory) throws IOException {
+        List<Path> directories;
+        try (Stream<Path> listing = Files.walk(directory)) {
+            directories = listing.filter(path -> !path.equals(directory)).filter(this::isWatchedDirectory)
+                    .collect(Collectors.toList());
+        }
+        for (Path subdirectory : directories) {
+            register(subdirectory);
+        }
+    }
+
+    private void register(Path directory) {
+        try {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("Could not watch " + directory + ", files added there are found by the next sync: "
+                    + e.getMessage());
+        }
+    }
+
+    // Hidden directories hold the application's own state: upload sessions, pack segments
+    private boolean isWatchedDirectory(Path path) {
+        Path relative = storageLayout.root().relativize(path);
+        for (Path part : relative) {
+            if (part.toString().startsWith(".")) {
+                return false;
+            }
+        }
+        return Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Ingests the pending files whose size has not changed for the debounce interval.
+     */
+    private void flushSettled() {
+        long now = System.currentTimeMillis();
+        List<Path> ready = new ArrayList<>();
+        Iterator<Map.Entry<Path, PendingFile>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = it.next();
+            if (now - entry.getValue().seenAt() < debounceMillis) {
+                continue;
+            }
+            long size = size(entry.getKey());
+            if (size < 0) {
+                it.remove();
+            } else if (size != entry.getValue().size()) {
+                entry.setValue(new PendingFile(now, size));
+            } else {
+                ready.add(entry.getKey());
+                it.remove();
+            }
+        }
+        if (!ready.isEmpty()) {
+            ingest(ready, defaultOwner(), "watch");
+        }
+    }
+
+    private int ingest(List<Path> files, User owner, String trigger) {
+        if (owner == null) {
+            System.err.println("Upload watcher owner '" + ownerUsername + "' not found, skipping " + files.size() + " files");
+            return 0;
+        }
+        synchronized (ingestLock) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            List<Image> created = imageService.ingestFiles(files, owner);
+            sample.stop(meterRegistry.timer("imagemanager.sync", "trigger", trigger));
+            meterRegistry.counter("imagemanager.sync.files", "trigger", trigger).increment(created.size());
+            long newest = files.stream().mapToLong(this::lastModified).max().orElse(0);
+            if (newest > highWaterMillis) {
+                highWaterMillis = newest;
+                writeManifest(newest);
+            }
+            return created.size();
+        }
+    }
+
+    private User defaultOwner() {
+        return userRepository.findByUsername(ownerUsername).orElse(null);
+    }
+
+    private long readManifest() {
+        Path manifest = storageLayout.root().resolve(MANIFEST_FILE);
+        try {
+            if (Files.exists(manifest)) {
+                return Long.parseLong(Files.readString(manifest, StandardCharsets.US_ASCII).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable ingest manifest: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    private void writeManifest(long value) {
+        Path manifest = storageLayout.root().resolve(MANIFEST_FILE);
+        Path temp = manifest.resolveSibling(MANIFEST_FILE + ".tmp");
+        try {
+            Files.writeString(temp, Long.toString(value), StandardCharsets.US_ASCII);
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write ingest manifest: " + e.getMessage());
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private record PendingFile(long seenAt, long size) {
+    }
+}
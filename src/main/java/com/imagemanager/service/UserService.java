@@ -1,10 +1,14 @@
 package com.imagemanager.service;
 
+import com.imagemanager.dto.UserPrincipal;
 import com.imagemanager.entity.User;
 import com.imagemanager.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -20,7 +24,9 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    // Runs before the other startup listeners, the upload watcher ingests files as admin
     @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
     public void createDefaultUser() {
         if (!userRepository.existsByUsername("admin")) {
             User admin = new User("admin", passwordEncoder.encode("admin"), "admin@example.com","ADMIN");
@@ -33,6 +39,24 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
     
+    /**
+     * Resolves the logged-in user by the id carried in the principal, which the users region of
+     * the second-level cache answers without a query. Principals without an id fall back to a
+     * lookup by name.
+     */
+    public User getCurrentUser(UserDetails principal) {
+        if (principal instanceof UserPrincipal userPrincipal) {
+            return getCachedUser(userPrincipal.getId());
+        }
+        return findByUsername(principal.getUsername())
+            .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+    
+    public User getCachedUser(Long userId) {
+        return userRepository.findById(userId)
+            .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+    }
+    
     public User save(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         return userRepository.save(user);
@@ -0,0 +1,342 @@
+package com.imagemanager.service;
+
+import com.imagemanager.dto.CursorPage;
+import com.imagemanager.dto.ImageCard;
+import com.imagemanager.entity.Image;
+import com.imagemanager.entity.Tag;
+import com.imagemanager.entity.User;
+import com.imagemanager.repository.BlobRepository;
+import com.imagemanager.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ImageServiceTest {
+
+    private static final int IMAGES = 60;
+    private static final int TAGS_PER_IMAGE = 3;
+
+    private static final String TAG_SET = "select * from image_tags t1_0 join tags t1_1 on t1_1.id=t1_0.tag_id "
+            + "where t1_0.image_id=? order by t1_1.name";
+    private static final String IN_USE = "select case when exists(select 1 from images i1_0 join image_tags t1_0 "
+            + "on i1_0.id=t1_0.image_id where t1_0.tag_id=?) then true else false end";
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private TagRegistryService tagRegistryService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private BlobRepository blobRepository;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private PackStoreService packStoreService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private TagIndexService tagIndexService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private SessionFactory sessionFactory;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        owner = userRepository.findByUsername("admin").orElseThrow();
+    }
+
+    /**
+     * A gallery page costs the same statements whatever its size: the cards and their tags,
+     * plus the COUNT for offset pages. Counted with the second-level and query caches empty.
+     */
+    @Test
+    void galleryPagesTakeAFixedNumberOfStatements() {
+        seed(IMAGES, TAGS_PER_IMAGE);
+
+        for (int size : new int[] { 6, 24 }) {
+            CursorPage<ImageCard> first = countStatements(2, () -> imageService.getImageCardsByCursor(null, size));
+            assertEquals(size, first.getContent().size());
+            first.getContent().forEach(card -> assertEquals(TAGS_PER_IMAGE, card.getTags().size()));
+
+            CursorPage<ImageCard> next = countStatements(2,
+                    () -> imageService.getImageCardsByCursor(first.getNextCursor(), size));
+            next.getContent().forEach(card -> assertEquals(TAGS_PER_IMAGE, card.getTags().size()));
+
+            Page<ImageCard> offset = countStatements(3, () -> imageService.getImageCardPage(PageRequest.of(1, size)));
+            offset.getContent().forEach(card -> assertEquals(TAGS_PER_IMAGE, card.getTags().size()));
+        }
+    }
+
+    /**
+     * Tagging an image it does not carry yet writes one join row, however many tags the image
+     * already has, and tagging it again writes nothing. Tags are known to the registry here; a
+     * new tag adds the registry's JDBC INSERT IGNORE, which Hibernate does not see, and a
+     * locking read of the new row.
+     */
+    @Test
+    void addingATagWritesOneJoinRow() {
+        Image image = seed(1, 50).get(0);
+        Tag extra = tagRegistryService.resolve(seedPrefix(image) + "-extra");
+
+        List<String> added = recordSql(() -> imageService.addTag(image.getId(), extra.getName()));
+        assertEquals(List.of(
+                "select * from images i1_0 where i1_0.id=?",
+                "select * from tags t1_0 where t1_0.id in (?)",
+                TAG_SET,
+                "select * from users u1_0 where u1_0.id=?",
+                "insert into image_tags (image_id,tag_id) values (?,?)"), added);
+
+        List<String> again = recordSql(() -> imageService.addTag(image.getId(), extra.getName()));
+        assertEquals(List.of(
+                "select * from images i1_0 where i1_0.id=?",
+                "select * from tags t1_0 where t1_0.id in (?)",
+                TAG_SET), again);
+    }
+
+    @Test
+    void removingATagStillInUseDeletesOneJoinRow() {
+        List<Image> images = seed(2, 50);
+        Long tagId = images.get(0).getTags().iterator().next().getId();
+
+        List<String> removed = recordSql(() -> imageService.removeTag(images.get(0).getId(), tagId));
+        assertEquals(List.of(
+                "select * from images i1_0 where i1_0.id=?",
+                "select * from tags t1_0 where t1_0.id=?",
+                TAG_SET,
+                "select * from users u1_0 where u1_0.id=?",
+                "delete from image_tags where image_id=? and tag_id=?",
+                IN_USE), removed);
+    }
+
+    @Test
+    void removingTheLastUseDeletesTheTag() {
+        Image image = seed(1, 50).get(0);
+        Long tagId = image.getTags().iterator().next().getId();
+
+        List<String> removed = recordSql(() -> imageService.removeTag(image.getId(), tagId));
+        assertEquals(List.of(
+                "select * from images i1_0 where i1_0.id=?",
+                "select * from tags t1_0 where t1_0.id=?",
+                TAG_SET,
+                "select * from users u1_0 where u1_0.id=?",
+                "delete from image_tags where image_id=? and tag_id=?",
+                IN_USE,
+                "delete from tags where id=?"), removed);
+    }
+
+    /**
+     * The in-memory indexes only learn about a tag change once it commits, so one rolled back
+     * with the caller's transaction leaves them matching the database.
+     */
+    @Test
+    void rolledBackTagChangesDoNotReachTheIndexes() {
+        Image image = seed(1, 1).get(0);
+        String name = seedPrefix(image) + "-rolled-back";
+
+        transactionTemplate.executeWithoutResult(status -> {
+            imageService.addTag(image.getId(), name);
+            status.setRollbackOnly();
+        });
+        assertEquals(0, indexedMatches(name));
+
+        imageService.addTag(image.getId(), name);
+        assertEquals(1, indexedMatches(name));
+
+        Long tagId = tagRegistryService.resolve(name).getId();
+        transactionTemplate.executeWithoutResult(status -> {
+            imageService.removeTag(image.getId(), tagId);
+            status.setRollbackOnly();
+        });
+        assertEquals(1, indexedMatches(name));
+        assertEquals(tagId, tagRegistryService.resolve(name).getId());
+    }
+
+    /**
+     * A search that runs while a tag change is still uncommitted sees the old rows. The cache
+     * must not keep serving that result once the change commits.
+     */
+    @Test
+    void searchesCachedBeforeATagChangeCommitsAreDropped() throws Exception {
+        Image image = seed(1, 1).get(0);
+        String name = seedPrefix(image) + "-late";
+        PageRequest page = PageRequest.of(0, 10);
+        Supplier<Page<Long>> search = () -> new PageImpl<>(jdbcTemplate.queryForList("SELECT jt.image_id "
+                + "FROM image_tags jt JOIN tags t ON t.id = jt.tag_id WHERE t.name = ?", Long.class, name));
+
+        ExecutorService otherRequest = Executors.newSingleThreadExecutor();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                imageService.addTag(image.getId(), name);
+                Future<Page<Long>> before = otherRequest.submit(() -> searchResultCache.get(name, page, search));
+                try {
+                    assertEquals(0, before.get(30, TimeUnit.SECONDS).getTotalElements());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } finally {
+            otherRequest.shutdownNow();
+        }
+
+        assertEquals(List.of(image.getId()), searchResultCache.get(name, page, search).getContent());
+    }
+
+    private long indexedMatches(String tagName) {
+        PageRequest page = PageRequest.of(0, 10);
+        long searchMatches = searchIndexService.search(tagName, page).getTotalElements();
+        assertEquals(searchMatches, tagIndexService.search(TagQuery.parse("tag:" + tagName), page).getTotalElements());
+        return searchMatches;
+    }
+
+    /**
+     * Two images share one stored file. Deleting the first twice at once removes its row and
+     * one reference only; the file stays until the second image is deleted as well.
+     */
+    @Test
+    void deletingAnImageTwiceReleasesItsFileOnce() throws Exception {
+        byte[] content = ("shared " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        String fileName = blobStoreService.store(new ByteArrayInputStream(content), ".jpg").getFileName();
+        blobStoreService.store(new ByteArrayInputStream(content), ".jpg");
+        List<Image> images = imageService.persistAll(List.of(new Image("first", fileName, "first.jpg", owner),
+                new Image("second", fileName, "second.jpg", owner)));
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> deletes = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                deletes.add(pool.submit(() -> {
+                    start.await();
+                    imageService.deleteImage(images.get(0).getId(), owner);
+                    return null;
+                }));
+            }
+            start.countDown();
+            int failed = 0;
+            for (Future<?> delete : deletes) {
+                try {
+                    delete.get(30, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+            assertEquals(1, failed);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, blobRepository.findByFileName(fileName).orElseThrow().getRefCount());
+        assertTrue(stored(fileName));
+
+        imageService.deleteImage(images.get(1).getId(), owner);
+        assertFalse(blobRepository.findByFileName(fileName).isPresent());
+        assertFalse(stored(fileName));
+    }
+
+    private boolean stored(String fileName) {
+        return packStoreService.contains(fileName) || Files.exists(storageLayout.resolve(fileName));
+    }
+
+    private List<Image> seed(int count, int tagsPerImage) {
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        List<String> names = new ArrayList<>();
+        for (int t = 0; t < tagsPerImage; t++) {
+            names.add(prefix + "-tag-" + t);
+        }
+        Collection<Tag> tags = tagRegistryService.resolveAll(names).values();
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Image image = new Image(prefix + " " + i, prefix + "-" + i + ".jpg", prefix + "-" + i + ".jpg", owner);
+            image.setDescription("x".repeat(5000));
+            tags.forEach(image::addTag);
+            images.add(image);
+        }
+        return imageService.persistAll(images);
+    }
+
+    private static String seedPrefix(Image image) {
+        return image.getFileName().substring(0, image.getFileName().indexOf('-'));
+    }
+
+    /**
+     * The statements Hibernate prepares for {@code work}, starting from empty caches. Column
+     * lists of plain selects are shortened to {@code *}.
+     */
+    private List<String> recordSql(Runnable work) {
+        sessionFactory.getCache().evictAllRegions();
+        SqlRecorder.start();
+        List<String> statements;
+        try {
+            work.run();
+        } finally {
+            statements = SqlRecorder.stop();
+        }
+        return statements.stream().map(sql -> sql.replaceFirst("^select [\\w.,]+ from ", "select * from "))
+                .collect(Collectors.toList());
+    }
+
+    private <T> T countStatements(long expected, Supplier<T> work) {
+        sessionFactory.getCache().evictAllRegions();
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        T result = work.get();
+        assertEquals(expected, statistics.getPrepareStatementCount());
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+package com.imagemanager.service;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the SQL Hibernate prepares while recording is on. Registered for the test profile
+ * through {@code hibernate.session_factory.statement_inspector}.
+ */
+public class SqlRecorder implements StatementInspector {
+
+    private static final List<String> statements = new ArrayList<>();
+    private static volatile boolean recording;
+
+    @Override
+    public String inspect(String sql) {
+        if (recording) {
+            synchronized (statements) {
+                statements.add(sql);
+            }
+        }
+        return sql;
+    }
+
+    public static void start() {
+        synchronized (statements) {
+            statements.clear();
+        }
+        recording = true;
+    }
+
+    public static List<String> stop() {
+        recording = false;
+        synchronized (statements) {
+            return new ArrayList<>(statements);
+        }
+    }
+}
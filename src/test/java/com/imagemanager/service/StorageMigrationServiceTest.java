@@ -0,0 +1,60 @@
+package com.imagemanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "storage.migration.grace-ms=1000")
+@ActiveProfiles("test")
+class StorageMigrationServiceTest {
+
+    @Autowired
+    private StorageMigrationService storageMigrationService;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    /**
+     * A reader that resolved a file at the old place just before it was migrated can still
+     * open it there for the grace period; afterwards the file only lives in its shard.
+     */
+    @Test
+    void filesStayReadableWhereReadersFoundThem() throws Exception {
+        String fileName = "migration-test-" + UUID.randomUUID() + ".jpg";
+        byte[] content = fileName.getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(storageLayout.root());
+        Path flat = storageLayout.root().resolve(fileName);
+        Files.write(flat, content);
+        assertEquals(flat, storageLayout.resolve(fileName));
+
+        Path sharded = storageLayout.prepare(fileName);
+        assertTrue(storageMigrationService.start());
+        await(() -> Files.exists(sharded));
+        assertEquals(sharded, storageLayout.resolve(fileName));
+        assertArrayEquals(content, Files.readAllBytes(flat));
+
+        await(() -> !storageMigrationService.isRunning());
+        assertFalse(Files.exists(flat));
+        assertArrayEquals(content, Files.readAllBytes(sharded));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+}
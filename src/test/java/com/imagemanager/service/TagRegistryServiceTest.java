@@ -0,0 +1,125 @@
+package com.imagemanager.service;
+
+import com.imagemanager.entity.Tag;
+import com.imagemanager.repository.TagRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TagRegistryServiceTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 50;
+    private static final int NAMES_PER_ROUND = 8;
+
+    @Autowired
+    private TagRegistryService tagRegistryService;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationContext context;
+
+    /**
+     * Every thread resolves the same new names at the same moment, in its own transaction and
+     * order, through one of two registries standing in for two application instances. All of
+     * them must get a tag for every name, the same one, and each name must have a single row.
+     */
+    @Test
+    void concurrentCreatorsGetTheSameSingleRow() throws Exception {
+        TagRegistryService otherInstance = context.getAutowireCapableBeanFactory().createBean(TagRegistryService.class);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                List<String> names = new ArrayList<>();
+                for (int n = 0; n < NAMES_PER_ROUND; n++) {
+                    names.add("stress-" + round + "-" + n);
+                }
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Map<String, Tag>>> results = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    TagRegistryService registry = t % 2 == 0 ? tagRegistryService : otherInstance;
+                    List<String> order = new ArrayList<>(names);
+                    Collections.shuffle(order, new Random(round * THREADS + t));
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return transactionTemplate.execute(status -> registry.resolveAll(order));
+                    }));
+                }
+                start.countDown();
+
+                Map<String, Long> ids = new HashMap<>();
+                for (Future<Map<String, Tag>> result : results) {
+                    Map<String, Tag> resolved = result.get(30, TimeUnit.SECONDS);
+                    assertEquals(NAMES_PER_ROUND, resolved.size());
+                    resolved.forEach((name, tag) -> {
+                        assertNotNull(tag, name);
+                        assertEquals(name, tag.getName());
+                        assertEquals(ids.computeIfAbsent(name, key -> tag.getId()), tag.getId(), name);
+                    });
+                }
+                assertEquals(NAMES_PER_ROUND, tagRepository.findByNameIn(names).size());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void resolvesRowsCreatedBehindItsBack() {
+        jdbcTemplate.update("INSERT INTO tags (name) VALUES ('inserted-elsewhere')");
+        Long id = jdbcTemplate.queryForObject("SELECT id FROM tags WHERE name = 'inserted-elsewhere'", Long.class);
+
+        Tag tag = transactionTemplate.execute(status -> tagRegistryService.resolve("inserted-elsewhere"));
+
+        assertEquals(id, tag.getId());
+    }
+
+    @Test
+    void recreatesTagsDeletedSinceTheyWereCached() {
+        Long first = tagRegistryService.resolve("deleted-elsewhere").getId();
+        jdbcTemplate.update("DELETE FROM tags WHERE id = ?", first);
+
+        Tag tag = transactionTemplate.execute(status -> tagRegistryService.resolve("deleted-elsewhere"));
+
+        assertNotNull(tag.getId());
+        assertEquals(1, tagRepository.findByNameIn(List.of("deleted-elsewhere")).size());
+    }
+
+    @Test
+    void rejectsNamesLongerThanTheColumn() {
+        String name = "x".repeat(Tag.MAX_NAME_LENGTH + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> tagRegistryService.resolveAll(List.of("fine", name)));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tags WHERE name LIKE 'xxx%'", Long.class));
+    }
+}
@@ -0,0 +1,68 @@
+package com.imagemanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ThumbnailServiceTest {
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    /**
+     * A 1000px original gets the 256 and 768 derivatives only, so the 1600 bound is served by
+     * the original rather than by the 768px downscale.
+     */
+    @Test
+    void boundsAboveTheOriginalAreServedByTheOriginal() throws IOException {
+        String fileName = writeOriginal(1000, 750);
+        thumbnailService.generateThumbnails(fileName);
+
+        assertEquals(derivative(fileName, 256), thumbnailService.resolveThumbnail(fileName, 256));
+        assertEquals(derivative(fileName, 768), thumbnailService.resolveThumbnail(fileName, 768));
+        assertEquals(storageLayout.resolve(fileName), thumbnailService.resolveThumbnail(fileName, 1600));
+    }
+
+    @Test
+    void smallScreenshotsAreNotServedAsTheirSmallestDerivative() throws IOException {
+        String fileName = writeOriginal(500, 300);
+        thumbnailService.generateThumbnails(fileName);
+
+        assertEquals(derivative(fileName, 256), thumbnailService.resolveThumbnail(fileName, 200));
+        assertEquals(storageLayout.resolve(fileName), thumbnailService.resolveThumbnail(fileName, 768));
+        assertEquals(storageLayout.resolve(fileName), thumbnailService.resolveThumbnail(fileName, 1600));
+    }
+
+    @Test
+    void requestsAboveEverySizeGetTheLargestDerivative() throws IOException {
+        String fileName = writeOriginal(2000, 1500);
+        thumbnailService.generateThumbnails(fileName);
+
+        assertEquals(derivative(fileName, 1600), thumbnailService.resolveThumbnail(fileName, 4000));
+    }
+
+    private String writeOriginal(int width, int height) throws IOException {
+        String fileName = "thumbnail-test-" + UUID.randomUUID() + ".png";
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png",
+                storageLayout.prepare(fileName).toFile());
+        return fileName;
+    }
+
+    private Path derivative(String fileName, int size) {
+        return storageLayout.resolve(ThumbnailService.thumbnailFileName(fileName, size));
+    }
+}
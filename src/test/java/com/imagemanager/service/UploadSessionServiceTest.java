@@ -0,0 +1,66 @@
+package com.imagemanager.service;
+
+import com.imagemanager.dto.UploadSessionStatus;
+import com.imagemanager.entity.User;
+import com.imagemanager.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"upload.session.max-size=1048576", "upload.session.max-per-user=2"})
+@ActiveProfiles("test")
+class UploadSessionServiceTest {
+
+    private static final int CHUNK = 65536;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User owner;
+    private final List<String> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.findByUsername("admin").orElseThrow();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (String id : opened) {
+            uploadSessionService.abort(id, owner);
+        }
+    }
+
+    @Test
+    void rejectsSessionsAboveTheMaximumSize() {
+        assertThrows(IllegalArgumentException.class, () -> open(1048577));
+        assertThrows(IllegalArgumentException.class, () -> open(Long.MAX_VALUE));
+    }
+
+    @Test
+    void limitsTheOpenSessionsOfAUser() throws IOException {
+        open(1048576);
+        open(1024);
+        assertThrows(IllegalStateException.class, () -> open(1024));
+
+        uploadSessionService.abort(opened.remove(0), owner);
+        open(1024);
+    }
+
+    private void open(long size) throws IOException {
+        UploadSessionStatus status = uploadSessionService.create(owner, "photo.jpg", size, CHUNK, null, null, null);
+        opened.add(status.getSessionId());
+    }
+}